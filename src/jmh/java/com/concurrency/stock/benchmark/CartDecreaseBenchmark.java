@@ -0,0 +1,92 @@
+package com.concurrency.stock.benchmark;
+
+import com.concurrency.stock.StockApplication;
+import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.repository.StockRepository;
+import com.concurrency.stock.service.PessimisticLockStockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 품목 itemCount개짜리 장바구니 주문을 일괄 차감(decreaseAll)과 품목별 차감으로 처리할 때의 처리량을 비교한다.
+ *
+ * 모든 주문이 같은 품목을 담으므로 품목별 차감은 주문마다 트랜잭션과 행 락을 품목 수만큼 잡는다.
+ *   ./gradlew jmh -PjmhIncludes=CartDecreaseBenchmark -PjmhThreads=32
+ */
+@State(Scope.Benchmark)
+public class CartDecreaseBenchmark {
+    private static final long INITIAL_QUANTITY = 1_000_000_000L;
+
+    @Param({"bulk", "per_item"})
+    public String mode;
+
+    @Param({"10"})
+    public int itemCount;
+
+    private ConfigurableApplicationContext context;
+    private RedisServer redisServer;
+    private PessimisticLockStockService pessimisticLockStockService;
+    private Map<Long, Long> cart;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int redisPort = Integer.getInteger("jmh.redis.port", 6390);
+        if (Boolean.parseBoolean(System.getProperty("jmh.redis.embedded", "true"))) {
+            redisServer = new RedisServer(redisPort);
+            redisServer.start();
+        }
+
+        String url = System.getProperty("jmh.datasource.url",
+                "jdbc:h2:mem:stock;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        boolean h2 = url.startsWith("jdbc:h2:");
+
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + System.getProperty("jmh.datasource.username", h2 ? "sa" : "root"),
+                "--spring.datasource.password=" + System.getProperty("jmh.datasource.password", ""),
+                "--spring.data.redis.port=" + redisPort,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"));
+        if (h2) {
+            args.add("--spring.datasource.driver-class-name=org.h2.Driver");
+        }
+
+        context = new SpringApplicationBuilder(StockApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+
+        pessimisticLockStockService = context.getBean(PessimisticLockStockService.class);
+        StockRepository stockRepository = context.getBean(StockRepository.class);
+        cart = new HashMap<>();
+        for (int i = 0; i < itemCount; i++) {
+            cart.put(stockRepository.saveAndFlush(new Stock((long) i, INITIAL_QUANTITY)).getId(), 1L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Benchmark
+    public void order() {
+        if (mode.equals("bulk")) {
+            pessimisticLockStockService.decreaseAll(cart);
+        } else {
+            cart.forEach(pessimisticLockStockService::decrease);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.concurrency.stock.benchmark;
+
+import com.concurrency.stock.StockApplication;
+import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.repository.StockRepository;
+import com.concurrency.stock.service.AtomicUpdateStockService;
+import com.concurrency.stock.service.ReservationStockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 결제 이탈이 있는 주문(checkout)의 처리량을 예약 방식과 차감 후 보상 방식으로 비교한다.
+ *
+ * reservation - reserve 후 결제하면 confirm, 이탈하면 아무것도 하지 않고 ttlMillis 뒤의 만료에 맡긴다.
+ * compensation - 조건부 UPDATE로 바로 차감하고, 이탈하면 increase로 되돌린다.
+ * 이탈 비율은 abandonPercent(기본 30%)이고, 만료 처리는 백그라운드에서 같은 DB를 쓰므로 측정에 포함된다.
+ *   ./gradlew jmh -PjmhIncludes=CheckoutBenchmark -PjmhThreads=32
+ */
+@State(Scope.Benchmark)
+public class CheckoutBenchmark {
+    private static final long INITIAL_QUANTITY = 1_000_000_000L;
+
+    @Param({"reservation", "compensation"})
+    public String mode;
+
+    @Param({"30"})
+    public int abandonPercent;
+
+    @Param({"100"})
+    public long ttlMillis;
+
+    private ConfigurableApplicationContext context;
+    private RedisServer redisServer;
+    private ReservationStockService reservationStockService;
+    private AtomicUpdateStockService atomicUpdateStockService;
+    private Duration ttl;
+    private Long stockId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int redisPort = Integer.getInteger("jmh.redis.port", 6390);
+        if (Boolean.parseBoolean(System.getProperty("jmh.redis.embedded", "true"))) {
+            redisServer = new RedisServer(redisPort);
+            redisServer.start();
+        }
+
+        String url = System.getProperty("jmh.datasource.url",
+                "jdbc:h2:mem:stock;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        boolean h2 = url.startsWith("jdbc:h2:");
+
+        // application.yml보다 우선하도록 커맨드라인 인자로 넘긴다.
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + System.getProperty("jmh.datasource.username", h2 ? "sa" : "root"),
+                "--spring.datasource.password=" + System.getProperty("jmh.datasource.password", ""),
+                "--spring.data.redis.port=" + redisPort,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"));
+        if (h2) {
+            args.add("--spring.datasource.driver-class-name=org.h2.Driver");
+        }
+
+        context = new SpringApplicationBuilder(StockApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+
+        reservationStockService = context.getBean(ReservationStockService.class);
+        atomicUpdateStockService = context.getBean(AtomicUpdateStockService.class);
+        ttl = Duration.ofMillis(ttlMillis);
+        stockId = context.getBean(StockRepository.class).saveAndFlush(new Stock(1L, INITIAL_QUANTITY)).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n[%s] 만료 대기 중인 예약 %d%n", mode, reservationStockService.getPendingExpiries());
+
+        context.close();
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Benchmark
+    public void checkout() {
+        boolean abandoned = ThreadLocalRandom.current().nextInt(100) < abandonPercent;
+
+        if (mode.equals("reservation")) {
+            Long reservationId = reservationStockService.reserve(stockId, 1L, ttl);
+            if (!abandoned) {
+                reservationStockService.confirm(reservationId);
+            }
+            return;
+        }
+
+        atomicUpdateStockService.decrease(stockId, 1L);
+        if (abandoned) {
+            atomicUpdateStockService.increase(stockId, 1L);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.concurrency.stock.benchmark;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * H2에는 MySQL의 GET_LOCK / RELEASE_LOCK이 없어서 같은 이름의 함수로 등록해 사용한다.
+ * H2 인메모리 DB는 호출한 스레드에서 함수를 실행하므로 스레드 소유 ReentrantLock으로 세션 락을 흉내낼 수 있다.
+ */
+public final class H2NamedLocks {
+    private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private H2NamedLocks() {
+    }
+
+    public static Integer getLock(String key, Integer timeoutSeconds) throws InterruptedException {
+        ReentrantLock lock = LOCKS.computeIfAbsent(key, k -> new ReentrantLock());
+        return lock.tryLock(timeoutSeconds, TimeUnit.SECONDS) ? 1 : 0;
+    }
+
+    public static Integer releaseLock(String key) {
+        ReentrantLock lock = LOCKS.get(key);
+        if (lock == null || !lock.isHeldByCurrentThread()) {
+            return 0;
+        }
+
+        lock.unlock();
+        return 1;
+    }
+}
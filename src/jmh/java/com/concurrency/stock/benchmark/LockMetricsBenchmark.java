@@ -0,0 +1,32 @@
+package com.concurrency.stock.benchmark;
+
+import com.concurrency.stock.metrics.LockMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * 경합 없는 경로에서 락 계측(recordWait + recordHold)이 요청마다 더하는 비용.
+ *
+ * 대기 시간이 임계치 이하라 Timer 기록 두 번만 하고 HotKeyTracker는 건드리지 않는다.
+ * baseline(System.nanoTime 한 번)과의 차이가 계측 비용이다.
+ *   ./gradlew jmh -PjmhIncludes=LockMetricsBenchmark -PjmhThreads=1 -PjmhModes=avgt -PjmhTimeUnit=ns
+ */
+@State(Scope.Benchmark)
+public class LockMetricsBenchmark {
+    private LockMetrics.Recorder recorder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        recorder = new LockMetrics(new SimpleMeterRegistry(), 100, 100).recorder("benchmark");
+    }
+
+    @Benchmark
+    public long baseline() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public void uncontended() {
+        recorder.recordHold(recorder.recordWait(1L, System.nanoTime()));
+    }
+}
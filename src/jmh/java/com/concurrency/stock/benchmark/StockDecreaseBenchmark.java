@@ -0,0 +1,275 @@
+package com.concurrency.stock.benchmark;
+
+import com.concurrency.stock.StockApplication;
+import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.facade.AdaptiveStockDecreaseRouter;
+import com.concurrency.stock.facade.AdmissionControlStockFacade;
+import com.concurrency.stock.facade.CoalescingStockFacade;
+import com.concurrency.stock.facade.HierarchicalLockStockFacade;
+import com.concurrency.stock.facade.LettuceLockStockFacade;
+import com.concurrency.stock.facade.NamedLockStockFacade;
+import com.concurrency.stock.facade.OptimisticLockStockFacade;
+import com.concurrency.stock.facade.RedissonLockStockFacade;
+import com.concurrency.stock.repository.RedisLockRepository;
+import com.concurrency.stock.repository.StockRepository;
+import com.concurrency.stock.service.AtomicUpdateStockService;
+import com.concurrency.stock.service.LedgerStockService;
+import com.concurrency.stock.service.PessimisticLockStockService;
+import com.concurrency.stock.service.RedisCounterStockService;
+import com.concurrency.stock.service.StockService;
+import com.concurrency.stock.service.StripedStockService;
+import com.concurrency.stock.service.WriteBehindStockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 재고 차감 전략 별 처리량(thrpt)과 지연 시간 분포(sample - p50/p99)를 측정한다.
+ *
+ * 기본값은 H2(MySQL 모드) + 내장 Redis이고, 실제 MySQL/Redis로 돌리려면
+ * -Djmh.datasource.url=jdbc:mysql://... -Djmh.redis.embedded=false 를 넘긴다.
+ * 스레드 수는 ./gradlew jmh -PjmhThreads=N 으로 정한다.
+ *
+ * 측정이 끝나면 (초기 재고 - 남은 재고)와 성공한 차감량을 비교해서 초과 판매나 유실된 차감을 출력한다.
+ * write_behind, redis_counter처럼 DB 반영이 늦는 방식은 밀린 차감을 반영한 뒤에 비교한다.
+ * lettuce, hierarchical은 요청 당 Redis 락 명령(SETNX, 해제, 연장) 수도 출력한다.
+ * 해제 알림으로 깨어나는 lettuce는 대기 중에 SETNX를 계속 보내지 않고, hierarchical은 로컬에서 줄을 세워 분산 락을 이어 쓰므로 요청 당 명령이 더 적다.
+ * 비교할 방식만 돌리려면 -PjmhStrategies=pessimistic,atomic 처럼 넘긴다.
+ * stripes는 striped에만 쓰이므로 다른 방식만 돌릴 때는 -PjmhStripes=1로 같은 측정이 반복되지 않게 한다.
+ * 조각 수 별 처리량은 -PjmhStrategies=striped 로 본다.
+ * 인기 상품에 요청이 몰리는 상황에서 adaptive와 고정 방식을 비교하려면
+ *   -PjmhStrategies=adaptive,pessimistic,optimistic,named,redisson,coalescing -PjmhDistributions=zipf -PjmhStripes=1
+ */
+@State(Scope.Benchmark)
+public class StockDecreaseBenchmark {
+    private static final long INITIAL_QUANTITY = 1_000_000_000L;
+    private static final double ZIPF_EXPONENT = 1.2;
+
+    /**
+     * synchronized - StockService.decreaseSynchronized (@Transactional + 락, 정합성이 깨지는 예시)
+     * synchronized_no_tx - StockService.decreaseSynchronizedWithoutTransactional
+     * striped - stripes개로 나눈 재고 조각에서 차감
+     */
+    @Param({"synchronized", "synchronized_no_tx", "pessimistic", "optimistic", "named", "lettuce", "redisson",
+            "atomic", "write_behind", "redis_counter", "striped", "ledger", "hierarchical", "coalescing", "adaptive", "admission"})
+    public String strategy;
+
+    /**
+     * 1이면 모든 요청이 재고 하나에 몰리고(hot), 클수록 분산된다.
+     */
+    @Param({"1", "100"})
+    public int productCount;
+
+    /**
+     * uniform - 모든 상품에 고르게 요청
+     * zipf - 앞쪽 상품 몇 개에 요청이 몰린다. (s = ZIPF_EXPONENT)
+     */
+    @Param({"uniform", "zipf"})
+    public String distribution;
+
+    /**
+     * striped가 재고를 나누는 조각 수. 다른 방식에는 쓰이지 않는다.
+     */
+    @Param({"1", "2", "4", "8", "16"})
+    public int stripes;
+
+    @Param({"1"})
+    public long quantity;
+
+    private ConfigurableApplicationContext context;
+    private RedisServer redisServer;
+    private StockRepository stockRepository;
+    private RedisLockRepository redisLockRepository;
+    private long redisCommandsBefore;
+    private Decrease decrease;
+    private long[] ids;
+
+    /**
+     * zipf에서 i번째 상품까지의 누적 가중치. uniform이면 null이다.
+     */
+    private double[] cdf;
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int redisPort = Integer.getInteger("jmh.redis.port", 6390);
+        if (Boolean.parseBoolean(System.getProperty("jmh.redis.embedded", "true"))) {
+            redisServer = new RedisServer(redisPort);
+            redisServer.start();
+        }
+
+        String url = System.getProperty("jmh.datasource.url",
+                "jdbc:h2:mem:stock;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        boolean h2 = url.startsWith("jdbc:h2:");
+
+        // application.yml보다 우선하도록 커맨드라인 인자로 넘긴다. properties(...)는 기본값이라 yml에 덮인다.
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + System.getProperty("jmh.datasource.username", h2 ? "sa" : "root"),
+                "--spring.datasource.password=" + System.getProperty("jmh.datasource.password", ""),
+                "--spring.data.redis.port=" + redisPort,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"));
+        if (h2) {
+            args.add("--spring.datasource.driver-class-name=org.h2.Driver");
+        }
+
+        context = new SpringApplicationBuilder(StockApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+
+        if (h2) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            jdbcTemplate.execute("create alias if not exists get_lock for 'com.concurrency.stock.benchmark.H2NamedLocks.getLock'");
+            jdbcTemplate.execute("create alias if not exists release_lock for 'com.concurrency.stock.benchmark.H2NamedLocks.releaseLock'");
+        }
+
+        stockRepository = context.getBean(StockRepository.class);
+        redisLockRepository = context.getBean(RedisLockRepository.class);
+        ids = new long[productCount];
+        for (int i = 0; i < productCount; i++) {
+            ids[i] = stockRepository.saveAndFlush(new Stock((long) i, INITIAL_QUANTITY)).getId();
+            prepare(ids[i]);
+        }
+        cdf = distribution.equals("zipf") ? zipfCdf(productCount) : null;
+
+        decrease = decrease(strategy);
+        redisCommandsBefore = redisLockRepository.getCommandCount();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        settle();
+
+        long remaining = 0;
+        long oversold = 0;
+        for (long id : ids) {
+            long stockQuantity = remaining(id);
+            remaining += stockQuantity;
+            if (stockQuantity < 0) {
+                oversold++;
+            }
+        }
+
+        long decreased = INITIAL_QUANTITY * productCount - remaining;
+        long expected = succeeded.sum() * quantity;
+        System.out.printf("%n[%s, products=%d, %s] 성공 %d, 실패 %d, 실제 차감 %d, 유실된 차감 %d, 음수 재고 %d%n",
+                strategy, productCount, distribution, succeeded.sum(), failed.sum(), decreased, expected - decreased, oversold);
+
+        long redisCommands = redisLockRepository.getCommandCount() - redisCommandsBefore;
+        if (redisCommands > 0) {
+            System.out.printf("redis 락 명령 %d회, 요청 당 %.2f회%n",
+                    redisCommands, (double) redisCommands / Math.max(succeeded.sum() + failed.sum(), 1));
+        }
+
+        context.close();
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Benchmark
+    public void decrease() {
+        long id = ids[nextIndex()];
+        try {
+            decrease.decrease(id, quantity);
+            succeeded.increment();
+        } catch (Exception e) {
+            failed.increment();
+        }
+    }
+
+    private int nextIndex() {
+        if (cdf == null) {
+            return ThreadLocalRandom.current().nextInt(ids.length);
+        }
+
+        int index = Arrays.binarySearch(cdf, ThreadLocalRandom.current().nextDouble(cdf[cdf.length - 1]));
+        return index < 0 ? -index - 1 : index;
+    }
+
+    private static double[] zipfCdf(int products) {
+        double[] cdf = new double[products];
+        double total = 0;
+        for (int i = 0; i < products; i++) {
+            total += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cdf[i] = total;
+        }
+        return cdf;
+    }
+
+    private Decrease decrease(String strategy) {
+        return switch (strategy) {
+            case "synchronized" -> context.getBean(StockService.class)::decreaseSynchronized;
+            case "synchronized_no_tx" -> context.getBean(StockService.class)::decreaseSynchronizedWithoutTransactional;
+            case "pessimistic" -> context.getBean(PessimisticLockStockService.class)::decrease;
+            case "optimistic" -> context.getBean(OptimisticLockStockFacade.class)::decrease;
+            case "named" -> context.getBean(NamedLockStockFacade.class)::decrease;
+            case "lettuce" -> context.getBean(LettuceLockStockFacade.class)::decrease;
+            case "redisson" -> context.getBean(RedissonLockStockFacade.class)::decrease;
+            case "atomic" -> context.getBean(AtomicUpdateStockService.class)::decrease;
+            case "write_behind" -> context.getBean(WriteBehindStockService.class)::decrease;
+            case "redis_counter" -> context.getBean(RedisCounterStockService.class)::decrease;
+            case "striped" -> context.getBean(StripedStockService.class)::decrease;
+            case "ledger" -> context.getBean(LedgerStockService.class)::decrease;
+            case "hierarchical" -> context.getBean(HierarchicalLockStockFacade.class)::decrease;
+            case "coalescing" -> context.getBean(CoalescingStockFacade.class)::decrease;
+            case "adaptive" -> context.getBean(AdaptiveStockDecreaseRouter.class)::decrease;
+            case "admission" -> context.getBean(AdmissionControlStockFacade.class)::decrease;
+            default -> throw new IllegalArgumentException("알 수 없는 전략입니다. " + strategy);
+        };
+    }
+
+    /**
+     * 차감 전에 재고를 각 방식의 저장소로 옮긴다.
+     */
+    private void prepare(long id) {
+        switch (strategy) {
+            case "redis_counter" -> context.getBean(RedisCounterStockService.class).load(id);
+            case "striped" -> context.getBean(StripedStockService.class).split(id, stripes);
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 아직 DB에 반영되지 않은 차감을 반영한다.
+     */
+    private void settle() {
+        switch (strategy) {
+            case "write_behind" -> context.getBean(WriteBehindStockService.class).flush();
+            case "redis_counter" -> context.getBean(RedisCounterStockService.class).reconcile();
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 조각이나 변동으로 나뉘어 있는 방식은 합친 값이 남은 재고다.
+     */
+    private long remaining(long id) {
+        return switch (strategy) {
+            case "striped" -> context.getBean(StripedStockService.class).getAvailable(id);
+            case "ledger" -> context.getBean(LedgerStockService.class).getAvailable(id);
+            default -> stockRepository.findById(id).orElseThrow().getQuantity();
+        };
+    }
+
+    @FunctionalInterface
+    private interface Decrease {
+        void decrease(Long id, Long quantity) throws Exception;
+    }
+}
@@ -0,0 +1,90 @@
+package com.concurrency.stock.benchmark;
+
+import com.concurrency.stock.StockApplication;
+import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.service.StockImportService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+/**
+ * 재고 10만 개 일괄 등록(StockImportService) 시간을 JDBC 배치 크기 별로 측정한다.
+ *
+ * batchSize=0은 기본 프로파일처럼 INSERT를 한 건씩 보내고, 1000은 perf 프로파일의 배치 설정과 같다.
+ * 등록 한 번이 호출 하나이므로 단일 실행 시간으로 본다.
+ *   ./gradlew jmh -PjmhIncludes=StockImportBenchmark -PjmhThreads=1 -PjmhModes=ss
+ * MySQL에서 rewriteBatchedStatements 효과까지 보려면 -Djmh.datasource.url=jdbc:mysql://...?rewriteBatchedStatements=true 를 넘긴다.
+ */
+@State(Scope.Benchmark)
+public class StockImportBenchmark {
+    private static final int STOCK_COUNT = 100_000;
+
+    @Param({"0", "1000"})
+    public int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private RedisServer redisServer;
+    private StockImportService stockImportService;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int redisPort = Integer.getInteger("jmh.redis.port", 6390);
+        if (Boolean.parseBoolean(System.getProperty("jmh.redis.embedded", "true"))) {
+            redisServer = new RedisServer(redisPort);
+            redisServer.start();
+        }
+
+        String url = System.getProperty("jmh.datasource.url",
+                "jdbc:h2:mem:stock;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        boolean h2 = url.startsWith("jdbc:h2:");
+
+        // application.yml보다 우선하도록 커맨드라인 인자로 넘긴다.
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + System.getProperty("jmh.datasource.username", h2 ? "sa" : "root"),
+                "--spring.datasource.password=" + System.getProperty("jmh.datasource.password", ""),
+                "--spring.data.redis.port=" + redisPort,
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                "--spring.jpa.properties.hibernate.order_inserts=true",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"));
+        if (h2) {
+            args.add("--spring.datasource.driver-class-name=org.h2.Driver");
+        }
+
+        context = new SpringApplicationBuilder(StockApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+
+        stockImportService = context.getBean(StockImportService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void truncate() {
+        jdbcTemplate.execute("truncate table stock");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Benchmark
+    public int importAll() {
+        return stockImportService.importAll(LongStream.range(0, STOCK_COUNT).mapToObj(i -> new Stock(i, 100L)));
+    }
+}
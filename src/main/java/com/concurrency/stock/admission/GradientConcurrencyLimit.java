@@ -0,0 +1,77 @@
+package com.concurrency.stock.admission;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 응답 시간의 변화로 동시 처리 한도를 조절한다. (gradient 방식)
+ *
+ * 평소 응답 시간(장기 평균)보다 최근 응답 시간이 길어지면 대기열이 생기기 시작한 것이므로 한도를 줄이고,
+ * 비슷하면 한도를 sqrt(limit)만큼 늘려서 여유가 있는지 계속 확인한다.
+ * 처리 중 실패(타임아웃 등)는 과부하 신호로 보고 한도를 바로 줄인다.
+ *
+ * 가상 스레드가 캐리어 스레드에 고정되지 않도록 synchronized 대신 ReentrantLock으로 갱신하고, 한도 읽기는 락 없이 한다.
+ */
+public class GradientConcurrencyLimit {
+    private static final double LONG_RTT_WEIGHT = 0.05;
+    private static final double SMOOTHING = 0.2;
+    private static final double TOLERANCE = 1.5;
+    private static final double DROP_FACTOR = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private double limit;
+    private double longRtt;
+    private volatile int currentLimit;
+
+    public GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.limit = initialLimit;
+        this.currentLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public int getLimit() {
+        return currentLimit;
+    }
+
+    public void onSample(long rttNanos) {
+        lock.lock();
+        try {
+            sample(rttNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onDropped() {
+        lock.lock();
+        try {
+            update(limit * DROP_FACTOR);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sample(long rttNanos) {
+        if (longRtt == 0) {
+            longRtt = rttNanos;
+        } else {
+            longRtt = longRtt * (1 - LONG_RTT_WEIGHT) + rttNanos * LONG_RTT_WEIGHT;
+        }
+
+        // 부하가 계속 높으면 장기 평균도 따라 올라가므로, 응답 시간이 회복되면 장기 평균을 바로 내린다.
+        if (longRtt > rttNanos * 2) {
+            longRtt = rttNanos * 2;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / rttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        update(limit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+    }
+
+    private void update(double newLimit) {
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        currentLimit = (int) limit;
+    }
+}
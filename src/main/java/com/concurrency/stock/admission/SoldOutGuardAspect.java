@@ -0,0 +1,44 @@
+package com.concurrency.stock.admission;
+
+import com.concurrency.stock.domain.OutOfStockException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 모든 재고 차감 방식(StockDecreaseStrategy) 앞에서 품절 여부를 먼저 확인한다.
+ *
+ * 품절된 재고는 락, 트랜잭션, DB 조회 없이 미리 만들어 둔 OutOfStockException.SOLD_OUT으로 바로 거절한다.
+ * 차감이 재고 부족으로 실패하면 그때 한 번만 재고를 읽어서 0이면 품절로 기록한다.
+ * 트랜잭션보다 먼저 실행되도록 가장 높은 우선순위를 준다.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SoldOutGuardAspect {
+    private final SoldOutRegistry soldOutRegistry;
+
+    public SoldOutGuardAspect(SoldOutRegistry soldOutRegistry) {
+        this.soldOutRegistry = soldOutRegistry;
+    }
+
+    @Around("execution(void com.concurrency.stock.service.StockDecreaseStrategy+.decrease(Long, Long)) && args(id, quantity)")
+    public Object guard(ProceedingJoinPoint joinPoint, Long id, Long quantity) throws Throwable {
+        if (soldOutRegistry.isSoldOut(id)) {
+            throw OutOfStockException.SOLD_OUT;
+        }
+
+        try {
+            return joinPoint.proceed();
+        } catch (OutOfStockException e) {
+            // 안쪽 전략에서 이미 품절로 처리했으면 다시 조회하지 않는다.
+            if (e != OutOfStockException.SOLD_OUT && !soldOutRegistry.isSoldOut(id)) {
+                soldOutRegistry.markIfSoldOut(id);
+            }
+            throw e;
+        }
+    }
+}
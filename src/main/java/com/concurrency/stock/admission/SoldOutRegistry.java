@@ -0,0 +1,186 @@
+package com.concurrency.stock.admission;
+
+import com.concurrency.stock.repository.StockRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 품절된 재고 id 집합.
+ *
+ * 재고 id를 비트 위치로 쓰는 비트셋이라 확인은 배열 읽기 한 번이고 객체를 만들지 않는다.
+ * 다른 인스턴스와는 Redis 비트맵(SETBIT)과 pub/sub으로 공유한다. 변경은 채널로 바로 받고,
+ * 놓친 알림이 오래 남지 않도록 refreshInterval마다 비트맵 전체를 다시 읽는다.
+ * SETBIT과 PUBLISH는 Lua 스크립트 하나로 실행하므로 알림 순서가 Redis 비트맵의 변경 순서와 같다.
+ *
+ * 품절 기록은 "재고가 0인 것을 읽은 뒤"에 일어나므로 그 사이 재입고가 커밋되면 영원히 품절로 남을 수 있다.
+ * 그래서 품절로 기록한 다음 DB를 다시 읽어서 재고가 있으면 되돌리고, 재입고 쪽의 clear는 로컬 상태와 관계없이 항상 Redis에 반영한다.
+ * 재입고가 재확인보다 먼저 커밋되면 재확인이 보고, 나중에 커밋되면 그 clear가 품절 기록보다 뒤에 실행된다.
+ *
+ * 품절 여부는 재고 조각까지 더한 수량(findAvailableQuantityById)으로 판단한다. split 후 Stock.quantity는 0이지만 재고는 조각에 있다.
+ * Redis 카운터, write-behind, ledger는 DB의 Stock.quantity보다 적게 승인하므로 DB가 0이면 실제로도 0이다.
+ *
+ * MAX_ID 이상의 id는 추적하지 않는다. (항상 품절 아님)
+ */
+@Slf4j
+@Component
+public class SoldOutRegistry implements MessageListener {
+    private static final String KEY = "stock:sold-out";
+    private static final String CHANNEL = "stock-sold-out";
+    private static final long MAX_ID = 1L << 24;
+
+    private static final RedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('setbit', KEYS[1], ARGV[1], ARGV[2]); " +
+            "redis.call('publish', ARGV[3], ARGV[4]); " +
+            "return 1", Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final StockRepository stockRepository;
+
+    /**
+     * 로컬 비트셋 쓰기(알림 반영, 확장, 전체 교체)를 직렬화한다. 읽기는 락 없이 한다.
+     * refresh는 GET부터 교체까지 이 락을 잡으므로 그 사이에 도착한 알림이 교체로 덮이지 않는다.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile AtomicLongArray words = new AtomicLongArray(1024);
+
+    public SoldOutRegistry(RedisTemplate<String, String> redisTemplate,
+                           RedisMessageListenerContainer redisMessageListenerContainer,
+                           StockRepository stockRepository) {
+        this.redisTemplate = redisTemplate;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.stockRepository = stockRepository;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * Redis 비트맵으로 로컬 비트셋을 교체한다. Redis 비트맵은 바이트마다 최상위 비트가 작은 offset이다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${stock.sold-out.refresh-interval-ms:10000}", initialDelayString = "${stock.sold-out.refresh-interval-ms:10000}")
+    public void refresh() {
+        writeLock.lock();
+        try {
+            byte[] bitmap = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                    connection.stringCommands().get(KEY.getBytes(StandardCharsets.UTF_8)));
+
+            AtomicLongArray loaded = new AtomicLongArray(Math.max(1024, (bitmap == null ? 0 : bitmap.length) / 8 + 1));
+            if (bitmap != null) {
+                for (int i = 0; i < bitmap.length; i++) {
+                    for (int bit = 0; bit < 8; bit++) {
+                        if ((bitmap[i] & (0x80 >>> bit)) != 0) {
+                            long id = (long) i * 8 + bit;
+                            loaded.set((int) (id >>> 6), loaded.get((int) (id >>> 6)) | (1L << id));
+                        }
+                    }
+                }
+            }
+            words = loaded;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean isSoldOut(long id) {
+        AtomicLongArray current = words;
+        int word = (int) (id >>> 6);
+        return id >= 0 && word < current.length() && (current.get(word) & (1L << id)) != 0;
+    }
+
+    /**
+     * DB에서 재고가 0이면 품절로 기록한다. 차감이 재고 부족으로 실패했거나 Stock.quantity가 0이 되었을 때 쓴다.
+     */
+    public void markIfSoldOut(long id) {
+        if (stockRepository.findAvailableQuantityById(id).filter(quantity -> quantity == 0).isPresent()) {
+            markSoldOut(id);
+        }
+    }
+
+    /**
+     * 재고가 0인 것을 확인한 뒤에 호출한다. 기록한 다음 DB를 다시 읽어서 그 사이 재입고됐으면 되돌린다.
+     */
+    public void markSoldOut(long id) {
+        update(id, true);
+
+        if (stockRepository.findAvailableQuantityById(id).filter(quantity -> quantity > 0).isPresent()) {
+            update(id, false);
+        }
+    }
+
+    /**
+     * 재고가 생겼을 때 호출한다. 다른 인스턴스가 기록한 품절 알림이 아직 도착하지 않았을 수 있으므로
+     * 로컬 비트가 꺼져 있어도 Redis 비트맵을 지우고 알린다.
+     */
+    public void clear(long id) {
+        update(id, false);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        set(Long.parseLong(body.substring(1)), body.charAt(0) == '+');
+    }
+
+    private void update(long id, boolean soldOut) {
+        if (id < 0 || id >= MAX_ID) {
+            return;
+        }
+
+        set(id, soldOut);
+
+        // Redis 장애가 재고 차감을 막지 않도록 공유 실패는 로그만 남긴다.
+        try {
+            redisTemplate.execute(UPDATE_SCRIPT, List.of(KEY),
+                    String.valueOf(id), soldOut ? "1" : "0", CHANNEL, (soldOut ? "+" : "-") + id);
+        } catch (RuntimeException e) {
+            log.warn("품절 상태 공유 실패. id={}, soldOut={}", id, soldOut, e);
+        }
+    }
+
+    private void set(long id, boolean soldOut) {
+        if (id < 0 || id >= MAX_ID) {
+            return;
+        }
+
+        writeLock.lock();
+        try {
+            int word = (int) (id >>> 6);
+            AtomicLongArray current = words;
+            if (word >= current.length()) {
+                AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                words = current = grown;
+            }
+
+            long mask = 1L << id;
+            long value = current.get(word);
+            current.set(word, soldOut ? value | mask : value & ~mask);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
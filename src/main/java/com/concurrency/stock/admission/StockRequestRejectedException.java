@@ -0,0 +1,10 @@
+package com.concurrency.stock.admission;
+
+/**
+ * 처리 한도를 넘은 요청을 DB에 보내지 않고 바로 거절할 때 던진다. 잠시 후 다시 시도할 수 있다.
+ */
+public class StockRequestRejectedException extends RuntimeException {
+    public StockRequestRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,26 @@
+package com.concurrency.stock.config;
+
+import com.concurrency.stock.retry.BackoffPolicy;
+import com.concurrency.stock.retry.ConflictStatistics;
+import com.concurrency.stock.retry.DecorrelatedJitterBackoff;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RetryConfig {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public BackoffPolicy backoffPolicy(@Value("${stock.optimistic.backoff-base-ms:5}") long baseMillis,
+                                       @Value("${stock.optimistic.backoff-cap-ms:200}") long capMillis) {
+        return new DecorrelatedJitterBackoff(baseMillis, capMillis);
+    }
+
+    @Bean
+    public ConflictStatistics conflictStatistics(@Value("${stock.optimistic.hot-threshold:0.5}") double hotThreshold,
+                                                 @Value("${stock.optimistic.evict-idle-ms:60000}") long evictIdleMillis) {
+        return new ConflictStatistics(hotThreshold, evictIdleMillis);
+    }
+}
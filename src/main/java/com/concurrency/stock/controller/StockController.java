@@ -0,0 +1,71 @@
+package com.concurrency.stock.controller;
+
+import com.concurrency.stock.facade.ReactiveRedissonLockStockFacade;
+import com.concurrency.stock.service.AtomicUpdateStockService;
+import com.concurrency.stock.service.StockAvailabilityService;
+import com.concurrency.stock.service.StockImportService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.constraints.Positive;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.StreamSupport;
+
+@RestController
+@RequestMapping("/stocks")
+@RequiredArgsConstructor
+public class StockController {
+    private final ReactiveRedissonLockStockFacade reactiveRedissonLockStockFacade;
+    private final AtomicUpdateStockService atomicUpdateStockService;
+    private final StockAvailabilityService stockAvailabilityService;
+    private final StockImportService stockImportService;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping("/{id}")
+    public StockResponse get(@PathVariable Long id) {
+        return new StockResponse(id, stockAvailabilityService.getAvailable(id));
+    }
+
+    /**
+     * Mono를 반환하면 Spring MVC가 비동기 요청으로 처리하므로 락을 기다리는 동안 Tomcat 스레드가 반납된다.
+     */
+    @PostMapping("/{id}/decrease")
+    public Mono<Void> decrease(@PathVariable Long id, @RequestParam @Positive Long quantity) {
+        return reactiveRedissonLockStockFacade.decrease(id, quantity);
+    }
+
+    /**
+     * 주문 하나의 여러 재고를 함께 차감한다. 하나라도 부족하면 아무것도 차감되지 않는다.
+     *
+     * @param quantities 재고 id → 수량 (1 이상)
+     */
+    @PostMapping("/decrease")
+    public void decreaseAll(@RequestBody Map<Long, Long> quantities) {
+        atomicUpdateStockService.decreaseAll(quantities);
+    }
+
+    @PostMapping("/{id}/restock")
+    public void restock(@PathVariable Long id, @RequestParam @Positive Long quantity) {
+        atomicUpdateStockService.increase(id, quantity);
+    }
+
+    /**
+     * 요청 본문의 JSON 배열을 원소 단위로 읽어서 청크마다 저장하므로 전체 목록을 메모리에 올리지 않는다.
+     */
+    @PostMapping("/import")
+    @ResponseStatus(HttpStatus.CREATED)
+    public int importAll(InputStream body) throws IOException {
+        try (MappingIterator<StockImportRequest> requests = objectMapper.readerFor(StockImportRequest.class).readValues(body)) {
+            return stockImportService.importAll(StreamSupport.stream(Spliterators.spliteratorUnknownSize(requests, Spliterator.ORDERED), false)
+                    .map(StockImportRequest::toStock));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.concurrency.stock.controller;
+
+import com.concurrency.stock.domain.Stock;
+
+public record StockImportRequest(Long productId, Long quantity) {
+    public Stock toStock() {
+        if (productId == null || quantity == null || quantity < 0) {
+            throw new IllegalArgumentException("잘못된 재고입니다. productId=" + productId + ", quantity=" + quantity);
+        }
+        return new Stock(productId, quantity);
+    }
+}
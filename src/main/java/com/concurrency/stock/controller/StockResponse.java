@@ -0,0 +1,4 @@
+package com.concurrency.stock.controller;
+
+public record StockResponse(Long id, Long quantity) {
+}
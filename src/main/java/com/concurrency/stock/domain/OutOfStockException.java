@@ -0,0 +1,21 @@
+package com.concurrency.stock.domain;
+
+/**
+ * 재고가 요청 수량보다 적을 때 던진다. 다시 시도해도 재고가 늘어나기 전까지는 결과가 같다.
+ */
+public class OutOfStockException extends RuntimeException {
+    private static final String MESSAGE = "재고는 0개 미만이 될 수 없습니다. ";
+
+    /**
+     * 스택 트레이스 없이 미리 만들어 둔 인스턴스. 품절된 상품의 요청을 객체 생성 없이 거절할 때 사용한다.
+     */
+    public static final OutOfStockException SOLD_OUT = new OutOfStockException(false);
+
+    public OutOfStockException() {
+        super(MESSAGE);
+    }
+
+    private OutOfStockException(boolean writableStackTrace) {
+        super(MESSAGE, null, false, writableStackTrace);
+    }
+}
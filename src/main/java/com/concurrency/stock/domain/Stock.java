@@ -10,17 +10,35 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @Getter
 public class Stock {
+    /**
+     * IDENTITY는 INSERT를 실행해야 id를 알 수 있어서 Hibernate가 INSERT를 배치로 묶지 못한다.
+     * 테이블 생성기로 id를 1000개씩 미리 받아두면 대량 등록 시 INSERT를 JDBC 배치로 보낼 수 있다.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "stock_id")
+    @TableGenerator(name = "stock_id", table = "id_generator", pkColumnValue = "stock", allocationSize = 1000)
     private Long id;
 
     private Long productId;
 
+    /**
+     * 판매 가능한 재고. 예약으로 보류된 수량은 빠져 있다.
+     */
     private Long quantity;
 
+    /**
+     * 결제를 기다리며 보류된 재고. 예약이 확정되면 사라지고, 취소/만료되면 quantity로 돌아간다.
+     */
+    private Long reserved = 0L;
+
     @Version
     private Long version;
 
+    /**
+     * 마지막으로 이 행을 쓴 분산 락 보유자의 펜싱 토큰. 이보다 작은 토큰으로 들어온 쓰기는 거부된다.
+     */
+    private Long fencingToken;
+
     @Builder
     public Stock(Long productId, Long quantity) {
         this.productId = productId;
@@ -28,10 +46,18 @@ public class Stock {
     }
 
     public void decrease(Long quantity) {
+        // 음수 차감은 재고를 늘린다.
+        if (quantity < 0) {
+            throw new IllegalArgumentException("차감 수량은 음수일 수 없습니다. id=" + id + ", quantity=" + quantity);
+        }
         if (this.quantity - quantity < 0) {
-            throw new RuntimeException("재고는 0개 미만이 될 수 없습니다. ");
+            throw new OutOfStockException();
         }
 
         this.quantity -= quantity;
     }
+
+    public void increase(Long quantity) {
+        this.quantity += quantity;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.concurrency.stock.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * 승인은 됐지만 DB에 반영하지 못한 재고 차감.
+ * 메모리 카운터로 승인된 write-behind 차감이 DB 재고 부족으로 거부되면 여기에 남기고, 운영자가 보고 보정한다.
+ */
+@Entity
+@Table(indexes = @Index(name = "ix_stock_dead_letter_stock_id", columnList = "stockId"))
+@NoArgsConstructor
+@Getter
+public class StockDeadLetter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long stockId;
+
+    private Long quantity;
+
+    private String reason;
+
+    private Instant createdAt;
+
+    public StockDeadLetter(Long stockId, Long quantity, String reason) {
+        this.stockId = stockId;
+        this.quantity = quantity;
+        this.reason = reason;
+        this.createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,57 @@
+package com.concurrency.stock.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * 요청 id 별 재고 차감 결과. 재시도된 요청은 이 기록의 결과를 그대로 돌려받는다.
+ *
+ * id를 직접 지정하므로 Persistable로 새 엔티티임을 알려서 save가 merge(SELECT 후 INSERT) 대신 바로 INSERT하게 한다.
+ */
+@Entity
+@Table(indexes = @Index(name = "ix_stock_decrease_log_created_at", columnList = "createdAt"))
+@NoArgsConstructor
+@Getter
+public class StockDecreaseLog implements Persistable<String> {
+    @Id
+    private String requestId;
+
+    private Long stockId;
+
+    private Long quantity;
+
+    private boolean succeeded;
+
+    private Instant createdAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public StockDecreaseLog(String requestId, Long stockId, Long quantity, boolean succeeded) {
+        this.requestId = requestId;
+        this.stockId = stockId;
+        this.quantity = quantity;
+        this.succeeded = succeeded;
+        this.createdAt = Instant.now();
+    }
+
+    @Override
+    public String getId() {
+        return requestId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
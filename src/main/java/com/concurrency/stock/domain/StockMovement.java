@@ -0,0 +1,36 @@
+package com.concurrency.stock.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * 재고 변동 기록. stock 행을 수정하지 않고 변동마다 행을 추가만 한다.
+ * 주기적으로 Stock.quantity에 합쳐지고(compaction) 삭제된다.
+ */
+@Entity
+@Table(indexes = @Index(name = "ix_stock_movement_stock_id", columnList = "stockId, id"))
+@NoArgsConstructor
+@Getter
+public class StockMovement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long stockId;
+
+    /**
+     * 재고 변동량. 차감은 음수이다.
+     */
+    private Long quantity;
+
+    private Instant createdAt;
+
+    public StockMovement(Long stockId, Long quantity) {
+        this.stockId = stockId;
+        this.quantity = quantity;
+        this.createdAt = Instant.now();
+    }
+}
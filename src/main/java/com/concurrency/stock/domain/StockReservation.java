@@ -0,0 +1,43 @@
+package com.concurrency.stock.domain;
+
+import jakarta.persistence.*;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * 결제가 진행되는 동안 재고를 잡아두는 예약.
+ * HELD 상태에서만 CONFIRMED / CANCELLED / EXPIRED 중 하나로 한 번 바뀐다.
+ */
+@Entity
+@Table(indexes = @Index(name = "ix_stock_reservation_status", columnList = "status, expiresAt"))
+@NoArgsConstructor
+@Getter
+public class StockReservation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long stockId;
+
+    private Long quantity;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private Instant expiresAt;
+
+    @Builder
+    public StockReservation(Long stockId, Long quantity, Instant expiresAt) {
+        this.stockId = stockId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+        this.status = Status.HELD;
+    }
+
+    public enum Status {
+        HELD, CONFIRMED, CANCELLED, EXPIRED
+    }
+}
@@ -0,0 +1,48 @@
+package com.concurrency.stock.domain;
+
+import jakarta.persistence.*;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 하나의 재고(Stock)를 K개의 행으로 나눈 조각.
+ * 핫한 재고 한 행에 몰리던 행 락 경합을 K개의 행으로 분산시키기 위해 사용한다.
+ */
+@Entity
+@Table(indexes = @Index(name = "ux_stock_stripe", columnList = "stockId, stripeIndex", unique = true))
+@NoArgsConstructor
+@Getter
+public class StockStripe {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long stockId;
+
+    private Integer stripeIndex;
+
+    private Long quantity;
+
+    @Builder
+    public StockStripe(Long stockId, Integer stripeIndex, Long quantity) {
+        this.stockId = stockId;
+        this.stripeIndex = stripeIndex;
+        this.quantity = quantity;
+    }
+
+    public void decrease(Long quantity) {
+        if (this.quantity - quantity < 0) {
+            throw new OutOfStockException();
+        }
+
+        this.quantity -= quantity;
+    }
+
+    /**
+     * 재분배 시 조각이 가질 재고를 다시 정한다.
+     */
+    public void assign(Long quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,120 @@
+package com.concurrency.stock.facade;
+
+import com.concurrency.stock.retry.ConflictStatistics;
+import com.concurrency.stock.service.StockDecreaseStrategy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 재고 id 별 경합 정도를 보고 차감 방식을 고른다.
+ *
+ * 요청이 드문 재고(cold)는 충돌이 거의 없으므로 락 대기 없는 낙관적 락이 가장 빠르고,
+ * 요청이 몰리는 재고(hot)는 재시도가 낭비되므로 요청을 모아서 한 트랜잭션으로 처리하는 coalescing이 빠르다.
+ *
+ * 최근 windowMillis 동안의 도착 수(슬라이딩 윈도우)나 낙관적 락 충돌률로 hot을 판단한다.
+ * hot이 되는 기준과 풀리는 기준을 다르게 두어(히스테리시스) 경계값 근처에서 방식이 계속 바뀌지 않도록 한다.
+ * 두 방식 모두 DB 행이 원본이므로 전환 중에 섞여도 재고가 틀어지지 않는다.
+ *
+ * coalescing으로 처리한 요청은 충돌이 없었던 것으로 충돌 통계에 기록한다. 그래서 충돌률만으로 hot이 된 재고는
+ * 요청이 줄면 충돌률이 내려가서 낙관적 락으로 돌아가고, 다시 충돌이 늘면 hot이 된다.
+ * 윈도우 동안 요청이 없던 재고는 evictIdleMillis마다 지워서 도착 기록이 계속 쌓이지 않게 한다.
+ */
+@Primary
+@Component
+public class AdaptiveStockDecreaseRouter implements StockDecreaseStrategy {
+    private static final int BUCKETS = 10;
+
+    private final StockDecreaseStrategy coldStrategy;
+    private final StockDecreaseStrategy hotStrategy;
+    private final ConflictStatistics conflictStatistics;
+    private final long bucketNanos;
+    private final long hotArrivals;
+    private final ConcurrentMap<Long, Traffic> traffic = new ConcurrentHashMap<>();
+
+    public AdaptiveStockDecreaseRouter(OptimisticLockStockFacade optimisticLockStockFacade,
+                                       CoalescingStockFacade coalescingStockFacade,
+                                       ConflictStatistics conflictStatistics,
+                                       @Value("${stock.router.window-ms:1000}") long windowMillis,
+                                       @Value("${stock.router.hot-arrivals:200}") long hotArrivals) {
+        this.coldStrategy = optimisticLockStockFacade;
+        this.hotStrategy = coalescingStockFacade;
+        this.conflictStatistics = conflictStatistics;
+        this.bucketNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis) / BUCKETS;
+        this.hotArrivals = hotArrivals;
+    }
+
+    @Override
+    public void decrease(Long id, Long quantity) throws InterruptedException {
+        if (isHot(id)) {
+            hotStrategy.decrease(id, quantity);
+            conflictStatistics.recordUncontended(id);
+        } else {
+            coldStrategy.decrease(id, quantity);
+        }
+    }
+
+    public boolean isHot(Long id) {
+        Traffic idTraffic = traffic.computeIfAbsent(id, key -> new Traffic());
+        long arrivals = idTraffic.arrive(System.nanoTime() / bucketNanos);
+
+        if (arrivals > hotArrivals || conflictStatistics.isHot(id)) {
+            idTraffic.hot = true;
+        } else if (arrivals < hotArrivals / 2) {
+            idTraffic.hot = false;
+        }
+        return idTraffic.hot;
+    }
+
+    @Scheduled(fixedDelayString = "${stock.router.evict-idle-ms:60000}")
+    public void evictIdle() {
+        long epoch = System.nanoTime() / bucketNanos;
+        traffic.values().removeIf(idTraffic -> idTraffic.isIdle(epoch));
+    }
+
+    public int getTrackedCount() {
+        return traffic.size();
+    }
+
+    /**
+     * 윈도우를 BUCKETS개의 칸으로 나눈 링. 칸마다 어느 시점(epoch)의 도착 수인지 같이 기록해서
+     * 한 바퀴 지난 칸은 다시 쓸 때 0부터 센다.
+     */
+    private static class Traffic {
+        private final AtomicLongArray epochs = new AtomicLongArray(BUCKETS);
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private volatile boolean hot;
+
+        long arrive(long epoch) {
+            int index = (int) (epoch % BUCKETS);
+            long seen = epochs.get(index);
+            if (seen != epoch && epochs.compareAndSet(index, seen, epoch)) {
+                counts.set(index, 0);
+            }
+            counts.incrementAndGet(index);
+
+            long sum = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (epoch - epochs.get(i) < BUCKETS) {
+                    sum += counts.get(i);
+                }
+            }
+            return sum;
+        }
+
+        boolean isIdle(long epoch) {
+            for (int i = 0; i < BUCKETS; i++) {
+                if (epoch - epochs.get(i) < BUCKETS) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.concurrency.stock.facade;
+
+import com.concurrency.stock.admission.GradientConcurrencyLimit;
+import com.concurrency.stock.admission.StockRequestRejectedException;
+import com.concurrency.stock.domain.OutOfStockException;
+import com.concurrency.stock.service.StockDecreaseStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 재고 id 별로 동시에 처리하는 요청 수를 제한하고, 넘치는 요청은 빠르게 거절한다.
+ *
+ * 한도 안의 요청만 차감 방식(락 대기, 재시도)에 들어가고, 나머지는 최대 maxQueue개까지 maxWait 동안만 기다린다.
+ * 대기열이 꽉 찼거나 maxWait이 지나면 StockRequestRejectedException을 던지므로
+ * 락 대기 스레드가 커넥션 풀과 톰캣 스레드를 붙잡고 있지 않는다.
+ *
+ * 한도는 GradientConcurrencyLimit이 응답 시간을 보고 조절한다.
+ * 품절된 재고는 SoldOutGuardAspect가 이 facade보다 먼저 거절하므로 대기열에 들어오지 않는다.
+ *
+ * 재고 id 별 Gate는 사용 중인 요청 수(users)를 gates.compute 안에서 세고,
+ * 아무도 쓰지 않은 채 evictIdleMillis가 지나면 지운다. 그 전까지는 학습한 한도를 유지한다.
+ */
+@Component
+public class AdmissionControlStockFacade implements StockDecreaseStrategy {
+    private final StockDecreaseStrategy delegate;
+    private final int initialLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final long evictIdleNanos;
+    private final ConcurrentMap<Long, Gate> gates = new ConcurrentHashMap<>();
+
+    private final Counter queueFull;
+    private final Counter timedOut;
+
+    public AdmissionControlStockFacade(AdaptiveStockDecreaseRouter adaptiveStockDecreaseRouter,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${stock.admission.initial-limit:20}") int initialLimit,
+                                       @Value("${stock.admission.max-limit:200}") int maxLimit,
+                                       @Value("${stock.admission.max-queue:100}") int maxQueue,
+                                       @Value("${stock.admission.max-wait-ms:200}") long maxWaitMillis,
+                                       @Value("${stock.admission.evict-idle-ms:60000}") long evictIdleMillis) {
+        this.delegate = adaptiveStockDecreaseRouter;
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.evictIdleNanos = TimeUnit.MILLISECONDS.toNanos(evictIdleMillis);
+
+        this.queueFull = Counter.builder("stock.admission.rejected").tag("reason", "queue_full").register(meterRegistry);
+        this.timedOut = Counter.builder("stock.admission.rejected").tag("reason", "timeout").register(meterRegistry);
+    }
+
+    @Override
+    public void decrease(Long id, Long quantity) throws InterruptedException {
+        Gate gate = gates.compute(id, (key, current) -> {
+            Gate acquired = current == null ? new Gate() : current;
+            acquired.users++;
+            return acquired;
+        });
+
+        try {
+            admit(gate, id, quantity);
+        } finally {
+            gates.computeIfPresent(id, (key, current) -> {
+                current.users--;
+                current.lastUsed = System.nanoTime();
+                return current;
+            });
+        }
+    }
+
+    private void admit(Gate gate, Long id, Long quantity) throws InterruptedException {
+        gate.acquire();
+        long start = System.nanoTime();
+        try {
+            delegate.decrease(id, quantity);
+            gate.limit.onSample(System.nanoTime() - start);
+        } catch (OutOfStockException e) {
+            gate.limit.onSample(System.nanoTime() - start);
+            throw e;
+        } catch (RuntimeException | InterruptedException e) {
+            gate.limit.onDropped();
+            throw e;
+        } finally {
+            gate.release();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stock.admission.evict-idle-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        for (Long id : gates.keySet()) {
+            gates.computeIfPresent(id, (key, current) ->
+                    current.users == 0 && now - current.lastUsed >= evictIdleNanos ? null : current);
+        }
+    }
+
+    public int getTrackedCount() {
+        return gates.size();
+    }
+
+    public int getLimit(Long id) {
+        Gate gate = gates.get(id);
+        return gate == null ? initialLimit : gate.limit.getLimit();
+    }
+
+    private class Gate {
+        private final GradientConcurrencyLimit limit = new GradientConcurrencyLimit(initialLimit, 1, maxLimit);
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private int inFlight;
+        private int waiting;
+
+        /**
+         * users와 lastUsed는 gates.compute 안에서만 읽고 쓴다.
+         */
+        private int users;
+        private long lastUsed = System.nanoTime();
+
+        void acquire() throws InterruptedException {
+            long deadline = System.nanoTime() + maxWaitNanos;
+
+            lock.lock();
+            try {
+                if (inFlight < limit.getLimit()) {
+                    inFlight++;
+                    return;
+                }
+
+                if (waiting >= maxQueue) {
+                    queueFull.increment();
+                    throw new StockRequestRejectedException("대기 중인 요청이 너무 많습니다.");
+                }
+
+                waiting++;
+                try {
+                    while (inFlight >= limit.getLimit()) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            timedOut.increment();
+                            throw new StockRequestRejectedException("대기 시간이 초과되었습니다.");
+                        }
+                        available.awaitNanos(remaining);
+                    }
+                    inFlight++;
+                } finally {
+                    waiting--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release() {
+            lock.lock();
+            try {
+                inFlight--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
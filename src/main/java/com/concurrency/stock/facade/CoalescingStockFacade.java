@@ -0,0 +1,192 @@
+package com.concurrency.stock.facade;
+
+import com.concurrency.stock.domain.OutOfStockException;
+import com.concurrency.stock.service.PessimisticLockStockService;
+import com.concurrency.stock.service.StockDecreaseStrategy;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 같은 재고에 대한 동시 차감 요청을 모아서 한 번의 트랜잭션으로 처리한다. (group commit)
+ *
+ * 요청은 재고 별 큐에 쌓이고, 그 중 한 스레드가 combiner가 되어 큐에 쌓인 요청을 최대 maxBatchSize개씩 꺼내
+ * PessimisticLockStockService.decreaseEach로 처리한 뒤 각 요청의 future를 완료시킨다.
+ * 배치를 처리하는 동안 들어온 요청이 다음 배치가 되므로 별도의 대기 시간 없이 트랜잭션 시간이 곧 모으는 구간이 된다.
+ *
+ * N번의 락 인계가 약 N/배치 크기 번으로 줄어든다.
+ *
+ * 요청이 계속 들어오면 combiner가 된 요청 스레드가 남의 요청만 처리하느라 돌아오지 못할 수 있다.
+ * 그래서 combiner는 자기 요청이 든 배치를 처리했거나 maxCombinerBatches개 배치를 처리하면 자리를 놓고,
+ * 남은 요청은 가상 스레드에 넘겨서 같은 규칙으로 이어서 처리하게 한다.
+ *
+ * 재고 id 별 Combiner는 요청을 넣는 중인 스레드 수(users)를 combiners.compute 안에서 세고,
+ * 아무도 쓰지 않고 큐와 처리 중인 배치가 모두 빈 채로 evictIdleMillis가 지나면 지운다.
+ */
+@Component
+public class CoalescingStockFacade implements StockDecreaseStrategy {
+    private final PessimisticLockStockService pessimisticLockStockService;
+    private final int maxBatchSize;
+    private final int maxCombinerBatches;
+    private final long evictIdleNanos;
+    private final ConcurrentMap<Long, Combiner> combiners = new ConcurrentHashMap<>();
+    private final ExecutorService handoff = Executors.newVirtualThreadPerTaskExecutor();
+
+    public CoalescingStockFacade(PessimisticLockStockService pessimisticLockStockService,
+                                 @Value("${stock.coalescing.max-batch-size:100}") int maxBatchSize,
+                                 @Value("${stock.coalescing.max-combiner-batches:4}") int maxCombinerBatches,
+                                 @Value("${stock.coalescing.evict-idle-ms:60000}") long evictIdleMillis) {
+        this.pessimisticLockStockService = pessimisticLockStockService;
+        this.maxBatchSize = maxBatchSize;
+        this.maxCombinerBatches = maxCombinerBatches;
+        this.evictIdleNanos = TimeUnit.MILLISECONDS.toNanos(evictIdleMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        handoff.close();
+    }
+
+    @Override
+    public void decrease(Long id, Long quantity) {
+        try {
+            decreaseAsync(id, quantity).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public CompletableFuture<Void> decreaseAsync(Long id, Long quantity) {
+        // 배치에 섞이면 같은 배치의 다른 요청까지 실패하므로 넣기 전에 거부한다.
+        StockDecreaseStrategy.requirePositive(id, quantity);
+        Request request = new Request(quantity);
+        Combiner combiner = combiners.compute(id, (key, current) -> {
+            Combiner acquired = current == null ? new Combiner(key) : current;
+            acquired.users++;
+            return acquired;
+        });
+
+        try {
+            combiner.queue.add(request);
+            combiner.drain(request);
+        } finally {
+            combiners.computeIfPresent(id, (key, current) -> {
+                current.users--;
+                current.lastUsed = System.nanoTime();
+                return current;
+            });
+        }
+
+        return request.future;
+    }
+
+    @Scheduled(fixedDelayString = "${stock.coalescing.evict-idle-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        for (Long id : combiners.keySet()) {
+            combiners.computeIfPresent(id, (key, current) ->
+                    current.isIdle() && now - current.lastUsed >= evictIdleNanos ? null : current);
+        }
+    }
+
+    public int getTrackedCount() {
+        return combiners.size();
+    }
+
+    private record Request(Long quantity, CompletableFuture<Void> future) {
+        Request(Long quantity) {
+            this(quantity, new CompletableFuture<>());
+        }
+    }
+
+    private class Combiner {
+        private final Long id;
+        private final Queue<Request> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        /**
+         * users와 lastUsed는 combiners.compute 안에서만 읽고 쓴다.
+         */
+        private int users;
+        private long lastUsed = System.nanoTime();
+
+        Combiner(Long id) {
+            this.id = id;
+        }
+
+        /**
+         * 넘겨받은 가상 스레드는 users에 잡히지 않으므로 큐와 running으로 남은 일이 없는지 확인한다.
+         * 배치는 running을 쥔 채 처리하므로 큐에서 꺼낸 요청도 여기서 빠지지 않는다.
+         */
+        boolean isIdle() {
+            return users == 0 && queue.isEmpty() && !running.get();
+        }
+
+        /**
+         * combiner 자리를 얻은 스레드가 배치를 처리한다.
+         * 자리를 놓은 뒤 큐를 다시 확인하므로 그 사이에 들어온 요청이 남겨지지 않는다.
+         *
+         * @param own 호출한 스레드의 요청. 넘겨받아 처리하는 가상 스레드는 null
+         */
+        void drain(Request own) {
+            int batches = 0;
+            while (!queue.isEmpty() && running.compareAndSet(false, true)) {
+                try {
+                    List<Request> batch = new ArrayList<>(maxBatchSize);
+                    Request request;
+                    while (batch.size() < maxBatchSize && (request = queue.poll()) != null) {
+                        batch.add(request);
+                    }
+
+                    if (!batch.isEmpty()) {
+                        process(batch);
+                    }
+                } finally {
+                    running.set(false);
+                }
+
+                if ((own != null && own.future.isDone()) || ++batches >= maxCombinerBatches) {
+                    if (!queue.isEmpty()) {
+                        handoff.execute(() -> drain(null));
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void process(List<Request> batch) {
+            boolean[] accepted;
+            try {
+                accepted = pessimisticLockStockService.decreaseEach(id, batch.stream().map(Request::quantity).toList());
+            } catch (RuntimeException e) {
+                batch.forEach(request -> request.future.completeExceptionally(e));
+                return;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                if (accepted[i]) {
+                    batch.get(i).future.complete(null);
+                } else {
+                    batch.get(i).future.completeExceptionally(new OutOfStockException());
+                }
+            }
+        }
+    }
+}
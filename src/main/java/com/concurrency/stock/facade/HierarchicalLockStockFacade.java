@@ -0,0 +1,37 @@
+package com.concurrency.stock.facade;
+
+import com.concurrency.stock.lock.HierarchicalLockManager;
+import com.concurrency.stock.metrics.LockMetrics;
+import com.concurrency.stock.service.StockDecreaseStrategy;
+import com.concurrency.stock.service.StockService;
+import org.springframework.stereotype.Component;
+
+/**
+ * LettuceLockStockFacade와 같은 Redis 락을 쓰지만 JVM 안에서 먼저 줄을 세워서 노드 당 한 스레드만 Redis 락을 다툰다.
+ */
+@Component
+public class HierarchicalLockStockFacade implements StockDecreaseStrategy {
+    private final HierarchicalLockManager hierarchicalLockManager;
+    private final StockService stockService;
+    private final LockMetrics.Recorder lockRecorder;
+
+    public HierarchicalLockStockFacade(HierarchicalLockManager hierarchicalLockManager, StockService stockService, LockMetrics lockMetrics) {
+        this.hierarchicalLockManager = hierarchicalLockManager;
+        this.stockService = stockService;
+        this.lockRecorder = lockMetrics.recorder("hierarchical");
+    }
+
+    @Override
+    public void decrease(Long id, Long quantity) throws InterruptedException {
+        long waitStart = System.nanoTime();
+
+        hierarchicalLockManager.executeWithLock(id, () -> {
+            long acquired = lockRecorder.recordWait(id, waitStart);
+            try {
+                stockService.decrease(id, quantity);
+            } finally {
+                lockRecorder.recordHold(acquired);
+            }
+        });
+    }
+}
@@ -1,25 +1,35 @@
 package com.concurrency.stock.facade;
 
+import com.concurrency.stock.metrics.LockMetrics;
 import com.concurrency.stock.repository.RedisLockRepository;
+import com.concurrency.stock.service.StockDecreaseStrategy;
 import com.concurrency.stock.service.StockService;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 @Component
-@RequiredArgsConstructor
-public class LettuceLockStockFacade {
+public class LettuceLockStockFacade implements StockDecreaseStrategy {
     private final RedisLockRepository redisLockRepository;
     private final StockService stockService;
+    private final LockMetrics.Recorder lockRecorder;
 
+    public LettuceLockStockFacade(RedisLockRepository redisLockRepository, StockService stockService, LockMetrics lockMetrics) {
+        this.redisLockRepository = redisLockRepository;
+        this.stockService = stockService;
+        this.lockRecorder = lockMetrics.recorder("lettuce");
+    }
+
+    @Override
     public void decrease(Long id, Long quantity) throws InterruptedException {
-        while (!redisLockRepository.lock(id)) {
-            Thread.sleep(100);
-        }
+        // 해제 알림(pub/sub)을 받거나 백오프 시간이 지나면 재시도
+        long waitStart = System.nanoTime();
+        String token = redisLockRepository.lock(id, () -> lockRecorder.recordRetry(id));
+        long acquired = lockRecorder.recordWait(id, waitStart);
 
         try {
             stockService.decreaseNamedLock(id, quantity);
         } finally {
-            redisLockRepository.unlock(id);
+            redisLockRepository.unlock(id, token);
+            lockRecorder.recordHold(acquired);
         }
     }
 }
@@ -1,27 +1,45 @@
 package com.concurrency.stock.facade;
 
-import com.concurrency.stock.domain.Stock;
-import com.concurrency.stock.repository.LockRepository;
-import com.concurrency.stock.repository.StockRepository;
+import com.concurrency.stock.lock.NamedLockExecutor;
+import com.concurrency.stock.metrics.LockMetrics;
+import com.concurrency.stock.service.StockDecreaseStrategy;
 import com.concurrency.stock.service.StockService;
-import lombok.RequiredArgsConstructor;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * 네임드 락은 락 전용 풀(NamedLockExecutor)에서 잡고, 차감 트랜잭션은 기본 풀에서 커넥션 하나만 사용한다.
+ * 이전에는 facade의 @Transactional 커넥션으로 get_lock을 잡고 REQUIRES_NEW로 커넥션을 하나 더 써서
+ * 요청 하나에 기본 풀 커넥션 두 개가 필요했다.
+ */
 @Component
-@RequiredArgsConstructor
-public class NamedLockStockFacade {
-    private final LockRepository lockRepository;
+public class NamedLockStockFacade implements StockDecreaseStrategy {
+    private final NamedLockExecutor namedLockExecutor;
     private final StockService stockService;
+    private final LockMetrics.Recorder lockRecorder;
 
-    @Transactional
+    public NamedLockStockFacade(NamedLockExecutor namedLockExecutor, StockService stockService, LockMetrics lockMetrics) {
+        this.namedLockExecutor = namedLockExecutor;
+        this.stockService = stockService;
+        this.lockRecorder = lockMetrics.recorder("named");
+    }
+
+    @Override
     public void decrease(Long id, Long quantity) {
+        long waitStart = System.nanoTime();
+
         try {
-            lockRepository.getLock(id.toString());
-            stockService.decreaseNamedLock(id, quantity);
-        } finally {
-            lockRepository.releaseLock(id.toString());
+            namedLockExecutor.executeWithLock(id.toString(), () -> {
+                long acquired = lockRecorder.recordWait(id, waitStart);
+                try {
+                    stockService.decrease(id, quantity);
+                } finally {
+                    lockRecorder.recordHold(acquired);
+                }
+            });
+        } catch (CannotAcquireLockException e) {
+            lockRecorder.recordTimeout(id);
+            throw e;
         }
     }
 }
@@ -1,21 +1,82 @@
 package com.concurrency.stock.facade;
 
+import com.concurrency.stock.metrics.LockMetrics;
+import com.concurrency.stock.retry.BackoffPolicy;
+import com.concurrency.stock.retry.ConflictStatistics;
 import com.concurrency.stock.service.OptimisticLockStockService;
-import lombok.RequiredArgsConstructor;
+import com.concurrency.stock.service.PessimisticLockStockService;
+import com.concurrency.stock.service.StockDecreaseStrategy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 낙관적 락 충돌(ObjectOptimisticLockingFailureException)만 재시도한다.
+ * 재고 부족처럼 다시 해도 결과가 같은 예외는 그대로 던진다.
+ *
+ * 재시도 간격은 BackoffPolicy가 정하고, maxAttempts 또는 maxWait를 넘기면 마지막 충돌 예외를 던진다.
+ * 재고 id의 충돌률이 임계치를 넘으면(hot) 재시도하지 않고 비관적 락으로 처리한다.
+ */
 @Component
-@RequiredArgsConstructor
-public class OptimisticLockStockFacade {
+public class OptimisticLockStockFacade implements StockDecreaseStrategy {
     private final OptimisticLockStockService optimisticLockStockService;
+    private final PessimisticLockStockService pessimisticLockStockService;
+    private final BackoffPolicy backoffPolicy;
+    private final ConflictStatistics conflictStatistics;
+    private final LockMetrics.Recorder lockRecorder;
+    private final int maxAttempts;
+    private final long maxWaitNanos;
+
+    public OptimisticLockStockFacade(OptimisticLockStockService optimisticLockStockService,
+                                     PessimisticLockStockService pessimisticLockStockService,
+                                     BackoffPolicy backoffPolicy,
+                                     ConflictStatistics conflictStatistics,
+                                     LockMetrics lockMetrics,
+                                     @Value("${stock.optimistic.max-attempts:50}") int maxAttempts,
+                                     @Value("${stock.optimistic.max-wait-ms:10000}") long maxWaitMillis) {
+        this.optimisticLockStockService = optimisticLockStockService;
+        this.pessimisticLockStockService = pessimisticLockStockService;
+        this.backoffPolicy = backoffPolicy;
+        this.conflictStatistics = conflictStatistics;
+        this.lockRecorder = lockMetrics.recorder("optimistic");
+        this.maxAttempts = maxAttempts;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
 
+    @Override
     public void decrease(Long id, Long quantity) throws InterruptedException {
-        while (true) {
+        long start = System.nanoTime();
+        long deadline = start + maxWaitNanos;
+        long delay = 0;
+
+        for (int attempt = 1; ; attempt++) {
+            // 충돌이 잦은 재고는 재시도로 트랜잭션을 낭비하지 않고 비관적 락으로 처리
+            if (conflictStatistics.isHot(id)) {
+                pessimisticLockStockService.decrease(id, quantity);
+                conflictStatistics.recordSuccess(id, attempt);
+                return;
+            }
+
             try {
                 optimisticLockStockService.decrease(id, quantity);
-                break;
-            } catch(Exception e) {
-                Thread.sleep(50);
+                conflictStatistics.recordSuccess(id, attempt);
+                // 낙관적 락은 락을 잡지 않으므로 성공까지 충돌/백오프로 보낸 시간을 대기 시간으로 본다.
+                lockRecorder.recordWait(id, start);
+                return;
+            } catch (ObjectOptimisticLockingFailureException e) {
+                conflictStatistics.recordConflict(id);
+
+                delay = backoffPolicy.nextDelayMillis(delay);
+                if (attempt >= maxAttempts || System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) > deadline) {
+                    conflictStatistics.recordGiveUp(id);
+                    lockRecorder.recordTimeout(id);
+                    throw e;
+                }
+
+                lockRecorder.recordRetry(id);
+                Thread.sleep(delay);
             }
         }
     }
@@ -0,0 +1,67 @@
+package com.concurrency.stock.facade;
+
+import com.concurrency.stock.lock.FencedLockProvider;
+import com.concurrency.stock.service.AtomicUpdateStockService;
+import org.redisson.api.RLockReactive;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.RedissonReactiveClient;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedissonLockStockFacade의 논블로킹 버전.
+ *
+ * 락 대기는 RLockReactive로 하므로 락을 기다리는 동안 스레드를 점유하지 않는다.
+ * 락은 스레드가 아니라 요청마다 만든 소유자 id로 잡고 풀기 때문에 획득과 해제가 서로 다른 스레드에서 일어나도 된다.
+ * JPA 차감은 블로킹이라 boundedElastic 스케줄러에서 실행한다. 락을 잡은 요청만 여기에 들어가므로 스레드 수는 작게 유지된다.
+ *
+ * RedissonLockStockFacade와 같은 락 이름과 같은 펜싱 토큰 카운터를 사용하므로 두 방식을 섞어 써도 상호 배제된다.
+ * 락을 얻은 뒤 토큰을 받고, 받은 뒤에도 여전히 보유 중일 때만 토큰을 검사하는 조건부 UPDATE로 차감한다.
+ * 임대가 만료된 뒤 늦게 도착한 쓰기는 DB에서 거부되고, 해제는 아직 보유 중일 때만 한다.
+ */
+@Component
+public class ReactiveRedissonLockStockFacade {
+    private static final long WAIT_SECONDS = 10;
+    private static final long WATCHDOG_LEASE = -1;
+
+    private final RedissonReactiveClient redissonReactiveClient;
+    private final AtomicUpdateStockService atomicUpdateStockService;
+
+    public ReactiveRedissonLockStockFacade(RedissonClient redissonClient, AtomicUpdateStockService atomicUpdateStockService) {
+        this.redissonReactiveClient = redissonClient.reactive();
+        this.atomicUpdateStockService = atomicUpdateStockService;
+    }
+
+    public Mono<Void> decrease(Long id, Long quantity) {
+        RLockReactive lock = redissonReactiveClient.getLock(id.toString());
+        long ownerId = ThreadLocalRandom.current().nextLong();
+
+        return Mono.usingWhen(
+                lock.tryLock(WAIT_SECONDS, WATCHDOG_LEASE, TimeUnit.SECONDS, ownerId)
+                        .flatMap(available -> available
+                                ? Mono.just(lock)
+                                : Mono.error(new CannotAcquireLockException("lock 획득 실패. id=" + id))),
+                acquired -> fencingToken(id, acquired, ownerId)
+                        .flatMap(token -> Mono.fromRunnable(() -> atomicUpdateStockService.decrease(id, quantity, token))
+                                .subscribeOn(Schedulers.boundedElastic()))
+                        .then(),
+                acquired -> acquired.isHeldByThread(ownerId)
+                        .flatMap(held -> held ? acquired.unlock(ownerId) : Mono.empty()));
+    }
+
+    /**
+     * 토큰을 받는 동안 임대가 만료됐다면 그 사이 다른 보유자가 더 작은 토큰을 받았을 수 있으므로 쓰지 않는다.
+     */
+    private Mono<Long> fencingToken(Long id, RLockReactive lock, long ownerId) {
+        return redissonReactiveClient.getAtomicLong(FencedLockProvider.tokenKey(id.toString())).incrementAndGet()
+                .flatMap(token -> lock.isHeldByThread(ownerId)
+                        .flatMap(held -> held
+                                ? Mono.just(token)
+                                : Mono.error(new CannotAcquireLockException("토큰을 받는 동안 lock 임대가 만료되었습니다. id=" + id))));
+    }
+}
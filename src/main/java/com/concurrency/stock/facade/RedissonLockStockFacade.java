@@ -1,35 +1,112 @@
 package com.concurrency.stock.facade;
 
-import com.concurrency.stock.service.StockService;
-import lombok.RequiredArgsConstructor;
+import com.concurrency.stock.lock.FencedLock;
+import com.concurrency.stock.lock.FencedLockProvider;
+import com.concurrency.stock.metrics.LockMetrics;
+import com.concurrency.stock.service.AtomicUpdateStockService;
+import com.concurrency.stock.service.StockDecreaseStrategy;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 @Component
-@RequiredArgsConstructor
-public class RedissonLockStockFacade {
-    private RedissonClient redissonClient;
-    private StockService stockService;
+public class RedissonLockStockFacade implements StockDecreaseStrategy {
+    private final RedissonClient redissonClient;
+    private final FencedLockProvider fencedLockProvider;
+    private final AtomicUpdateStockService atomicUpdateStockService;
+    private final LockMetrics.Recorder lockRecorder;
 
+    public RedissonLockStockFacade(RedissonClient redissonClient,
+                                   FencedLockProvider fencedLockProvider,
+                                   AtomicUpdateStockService atomicUpdateStockService,
+                                   LockMetrics lockMetrics) {
+        this.redissonClient = redissonClient;
+        this.fencedLockProvider = fencedLockProvider;
+        this.atomicUpdateStockService = atomicUpdateStockService;
+        this.lockRecorder = lockMetrics.recorder("redisson");
+    }
+
+    /**
+     * 고정 임대(1초) 대신 watchdog 갱신을 쓰고, 차감은 펜싱 토큰을 검사하는 조건부 UPDATE로 한다.
+     * 임대가 만료된 뒤 늦게 도착한 쓰기는 DB에서 거부되고, 해제는 아직 보유 중일 때만 한다.
+     */
+    @Override
     public void decrease(Long id, Long quantity) {
-        RLock lock = redissonClient.getLock(id.toString());
+        long waitStart = System.nanoTime();
 
-        try {
-            boolean available = lock.tryLock(10, 1, TimeUnit.SECONDS); // 락 시간 조절
+        try (FencedLock lock = fencedLockProvider.tryLock(id.toString(), 10, TimeUnit.SECONDS)) {
+            if (lock == null) {
+                // 조용히 반환하면 호출한 쪽은 차감되지 않은 요청을 성공으로 안다.
+                lockRecorder.recordTimeout(id);
+                throw new CannotAcquireLockException("lock 획득 실패. id=" + id);
+            }
 
-            if (!available) {
-                System.out.println("lock 획득 실패");
-                return;
+            long acquired = lockRecorder.recordWait(id, waitStart);
+            try {
+                atomicUpdateStockService.decrease(id, quantity, lock.getToken());
+            } finally {
+                lockRecorder.recordHold(acquired);
             }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            stockService.decrease(id, quantity);
+    /**
+     * 주문의 모든 재고 락을 MultiLock으로 한 번에 잡는다. 락은 id 순서로 잡아서 주문끼리 교착되지 않도록 한다.
+     *
+     * decrease와 같이 재고마다 펜싱 토큰을 받고, 받은 뒤에도 모든 락을 보유 중일 때만 토큰을 검사하는 조건부 UPDATE로 차감한다.
+     * MultiLock은 isHeldByCurrentThread를 지원하지 않으므로 보유 확인과 해제는 락마다 한다.
+     */
+    public void decreaseAll(Map<Long, Long> quantities) {
+        List<Long> ids = quantities.keySet().stream().sorted().toList();
+        RLock[] locks = ids.stream()
+                .map(id -> redissonClient.getLock(id.toString()))
+                .toArray(RLock[]::new);
+        RLock lock = redissonClient.getMultiLock(locks);
+
+        try {
+            if (!lock.tryLock(10, TimeUnit.SECONDS)) {
+                throw new CannotAcquireLockException("lock 획득 실패. ids=" + ids);
+            }
+
+            try {
+                Map<Long, Long> fencingTokens = new HashMap<>();
+                for (Long id : ids) {
+                    fencingTokens.put(id, redissonClient.getAtomicLong(FencedLockProvider.tokenKey(id.toString())).incrementAndGet());
+                }
+
+                // 토큰을 받는 동안 임대가 만료된 락이 있으면 그 사이 다른 보유자가 더 작은 토큰을 받았을 수 있다.
+                if (!isHeldByCurrentThread(locks)) {
+                    throw new CannotAcquireLockException("토큰을 받는 동안 lock 임대가 만료되었습니다. ids=" + ids);
+                }
+
+                atomicUpdateStockService.decreaseAll(quantities, fencingTokens);
+            } finally {
+                // 만료된 락을 해제하면 예외가 나서 실제 결과를 가리므로 아직 보유 중인 락만 푼다.
+                for (RLock held : locks) {
+                    if (held.isHeldByCurrentThread()) {
+                        held.unlock();
+                    }
+                }
+            }
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
-        } finally {
-            lock.unlock();
         }
     }
+
+    private static boolean isHeldByCurrentThread(RLock[] locks) {
+        for (RLock lock : locks) {
+            if (!lock.isHeldByCurrentThread()) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,35 @@
+package com.concurrency.stock.lock;
+
+import org.redisson.api.RLock;
+
+/**
+ * 펜싱 토큰이 붙은 분산 락.
+ *
+ * 토큰은 락을 얻은 뒤 별도로 증가시키므로 획득 순서와 토큰 순서가 어긋날 수 있다.
+ * FencedLockProvider는 토큰을 받은 뒤에도 락을 보유 중일 때만 FencedLock을 돌려주므로,
+ * 그 이후에 락을 얻은 쪽은 이 토큰보다 큰 토큰을 받는다.
+ * 쓰기에 토큰을 함께 넘기면 임대가 만료된 이전 보유자의 늦은 쓰기를 DB가 거부할 수 있다.
+ */
+public class FencedLock implements AutoCloseable {
+    private final RLock lock;
+    private final long token;
+
+    FencedLock(RLock lock, long token) {
+        this.lock = lock;
+        this.token = token;
+    }
+
+    public long getToken() {
+        return token;
+    }
+
+    /**
+     * 아직 이 스레드가 보유 중일 때만 해제한다. 임대가 만료되어 다른 쪽이 가져간 락은 건드리지 않는다.
+     */
+    @Override
+    public void close() {
+        if (lock.isHeldByCurrentThread()) {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.concurrency.stock.lock;
+
+import lombok.RequiredArgsConstructor;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redisson 락 + 펜싱 토큰.
+ *
+ * 임대 시간을 고정하지 않고 watchdog 갱신을 사용한다. 보유자가 살아있는 동안은 임대가 연장되고,
+ * 프로세스가 죽으면 watchdog 주기(lockWatchdogTimeout) 안에 풀린다.
+ * GC 멈춤 등으로 갱신이 늦어져 임대가 만료되더라도 펜싱 토큰이 이전 보유자의 쓰기를 막아준다.
+ */
+@Component
+@RequiredArgsConstructor
+public class FencedLockProvider {
+    private final RedissonClient redissonClient;
+
+    /**
+     * @return 획득하면 FencedLock, waitTime 안에 얻지 못했거나 토큰을 받는 동안 임대가 만료됐으면 null
+     */
+    public FencedLock tryLock(String name, long waitTime, TimeUnit unit) throws InterruptedException {
+        RLock lock = redissonClient.getLock(name);
+        if (!lock.tryLock(waitTime, unit)) {
+            return null;
+        }
+
+        try {
+            long token = redissonClient.getAtomicLong(tokenKey(name)).incrementAndGet();
+
+            // 획득과 토큰 발급 사이에 멈춰서 임대가 만료됐다면 그 사이 다른 보유자가 더 작은 토큰을 받았을 수 있다.
+            // 발급 후에도 여전히 보유 중이면, 이후의 보유자는 모두 이 시점 뒤에 락을 얻으므로 더 큰 토큰을 받는다.
+            if (!lock.isHeldByCurrentThread()) {
+                return null;
+            }
+            return new FencedLock(lock, token);
+        } catch (RuntimeException e) {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 락 이름 별 펜싱 토큰 카운터. 같은 락을 잡는 다른 구현(리액티브 등)도 이 카운터에서 토큰을 받아야 순서가 맞는다.
+     */
+    public static String tokenKey(String name) {
+        return "fencing-token:" + name;
+    }
+}
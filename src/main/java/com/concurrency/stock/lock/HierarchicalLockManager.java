@@ -0,0 +1,103 @@
+package com.concurrency.stock.lock;
+
+import com.concurrency.stock.repository.RedisLockRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JVM 로컬 락 + 분산 락 2단계 락.
+ *
+ * 같은 JVM에서 같은 키를 기다리는 스레드들은 먼저 로컬 ReentrantLock에서 줄을 서고,
+ * 로컬 락을 얻은 스레드 하나만 Redis 분산 락(RedisLockRepository)을 잡는다.
+ * 작업이 끝났을 때 로컬에 기다리는 스레드가 있으면 분산 락을 풀지 않고 그대로 넘겨준다. (최대 maxBatch번)
+ * 노드 안의 동시 요청 수만큼 Redis 명령과 노드 간 락 인계가 줄어든다.
+ *
+ * RedisLockRepository는 스레드가 아니라 토큰으로 소유권을 확인하므로 다른 스레드가 잡은 분산 락을 이어서 쓰고 풀 수 있다.
+ * 넘겨받은 스레드도 분산 락의 TTL 안에서 실행되므로, 넘겨줄 때 남은 TTL이 절반 아래면 토큰을 확인하는 PEXPIRE로 TTL을 다시 늘린다.
+ * 연장에 실패하면(이미 만료됨) 넘겨주지 않고 토큰을 버려서 다음 스레드가 분산 락을 새로 잡게 한다.
+ *
+ * 로컬 슬롯은 사용 중인 스레드 수를 세서 0이 되면 제거하므로 맵의 크기는 동시에 사용 중인 키 수를 넘지 않는다.
+ */
+@Component
+public class HierarchicalLockManager {
+    private final RedisLockRepository redisLockRepository;
+    private final int maxBatch;
+    private final long renewBeforeNanos;
+    private final ConcurrentMap<Long, LocalSlot> slots = new ConcurrentHashMap<>();
+
+    public HierarchicalLockManager(RedisLockRepository redisLockRepository,
+                                   @Value("${stock.hierarchical-lock.max-batch:16}") int maxBatch) {
+        this.redisLockRepository = redisLockRepository;
+        this.maxBatch = maxBatch;
+        this.renewBeforeNanos = redisLockRepository.getLockTtl().toNanos() / 2;
+    }
+
+    public void executeWithLock(Long key, Runnable action) throws InterruptedException {
+        LocalSlot slot = slots.compute(key, (k, current) -> {
+            LocalSlot acquired = current == null ? new LocalSlot() : current;
+            acquired.users++;
+            return acquired;
+        });
+
+        try {
+            slot.lock.lockInterruptibly();
+            try {
+                run(key, slot, action);
+            } finally {
+                slot.lock.unlock();
+            }
+        } finally {
+            slots.computeIfPresent(key, (k, current) -> --current.users == 0 ? null : current);
+        }
+    }
+
+    /**
+     * 로컬 슬롯 수 - 사용 중인 키 수
+     */
+    public int getActiveKeys() {
+        return slots.size();
+    }
+
+    private void run(Long key, LocalSlot slot, Runnable action) throws InterruptedException {
+        if (slot.token == null) {
+            slot.token = redisLockRepository.lock(key);
+            slot.uses = 0;
+            slot.expiresAt = System.nanoTime() + redisLockRepository.getLockTtl().toNanos();
+        }
+
+        try {
+            action.run();
+        } finally {
+            slot.uses++;
+
+            // 로컬에 기다리는 스레드가 없거나 넘겨준 횟수가 한도에 닿으면 다른 노드에 양보한다.
+            if (!slot.lock.hasQueuedThreads() || slot.uses >= maxBatch) {
+                String token = slot.token;
+                slot.token = null;
+                redisLockRepository.unlock(key, token);
+            } else if (slot.expiresAt - System.nanoTime() < renewBeforeNanos) {
+                long renewedAt = System.nanoTime();
+                if (redisLockRepository.extend(key, slot.token)) {
+                    slot.expiresAt = renewedAt + redisLockRepository.getLockTtl().toNanos();
+                } else {
+                    slot.token = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * users는 slots.compute 안에서만, token, uses, expiresAt은 lock을 잡은 상태에서만 변경한다.
+     */
+    private static class LocalSlot {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int users;
+        private String token;
+        private int uses;
+        private long expiresAt;
+    }
+}
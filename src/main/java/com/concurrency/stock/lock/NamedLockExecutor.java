@@ -0,0 +1,170 @@
+package com.concurrency.stock.lock;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * MySQL 네임드 락(GET_LOCK / RELEASE_LOCK) 전용 실행기.
+ *
+ * 네임드 락은 커넥션(세션)에 묶이므로 획득한 커넥션으로 해제해야 하고, 락을 잡는 동안 그 커넥션을 계속 들고 있어야 한다.
+ * 이 커넥션을 비즈니스 트랜잭션과 같은 풀에서 꺼내면 요청 하나가 커넥션 두 개를 쓰게 되어 풀이 쉽게 고갈된다.
+ * 그래서 락 전용의 작은 풀(named-lock)을 따로 두고, 비즈니스 트랜잭션은 기존 풀에서 커넥션 하나만 쓰게 한다.
+ * 같은 키를 기다리는 커넥션은 어차피 한 번에 하나씩만 진행하므로 락 풀은 동시에 처리할 키 수 정도면 되고,
+ * 쉬는 동안에는 minimumIdle개만 남겨서 MySQL 전체 커넥션 수(비즈니스 풀 + 락 풀)가 크게 늘지 않게 한다.
+ *
+ * 같은 스레드가 같은 키로 다시 들어오면 커넥션을 새로 꺼내지 않고 카운트만 올린다. (재진입)
+ */
+@Component
+public class NamedLockExecutor {
+    private static final String GET_LOCK = "select get_lock(?, ?)";
+    private static final String RELEASE_LOCK = "select release_lock(?)";
+
+    private final HikariDataSource dataSource;
+    private final int timeoutSeconds;
+    private final ThreadLocal<Map<String, HeldLock>> heldLocks = ThreadLocal.withInitial(HashMap::new);
+
+    public NamedLockExecutor(DataSourceProperties dataSourceProperties,
+                             MeterRegistry meterRegistry,
+                             @Value("${stock.named-lock.pool-size:5}") int poolSize,
+                             @Value("${stock.named-lock.minimum-idle:1}") int minimumIdle,
+                             @Value("${stock.named-lock.timeout-seconds:3}") int timeoutSeconds) {
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        this.dataSource.setPoolName("named-lock");
+        this.dataSource.setMaximumPoolSize(poolSize);
+        this.dataSource.setMinimumIdle(Math.min(minimumIdle, poolSize));
+        this.dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+
+    public void executeWithLock(String key, Runnable runnable) {
+        executeWithLock(key, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    public <T> T executeWithLock(String key, Supplier<T> supplier) {
+        lock(key);
+        try {
+            return supplier.get();
+        } finally {
+            unlock(key);
+        }
+    }
+
+    /**
+     * 락 전용 풀에서 사용 중인 커넥션 수
+     */
+    public int getActiveConnections() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    public int getMaximumConnections() {
+        return dataSource.getMaximumPoolSize();
+    }
+
+    private void lock(String key) {
+        Map<String, HeldLock> held = heldLocks.get();
+        HeldLock heldLock = held.get(key);
+        if (heldLock != null) {
+            heldLock.count++;
+            return;
+        }
+
+        Connection connection = getConnection();
+        try (PreparedStatement statement = connection.prepareStatement(GET_LOCK)) {
+            statement.setString(1, key);
+            statement.setInt(2, timeoutSeconds);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                int result = resultSet.getInt(1);
+
+                // 1: 획득, 0: 타임아웃, NULL: 에러(스레드 kill, 메모리 부족 등)
+                if (resultSet.wasNull()) {
+                    throw new DataAccessResourceFailureException("get_lock 실행 중 오류가 발생했습니다. key=" + key);
+                }
+                if (result != 1) {
+                    throw new CannotAcquireLockException("get_lock 타임아웃. key=" + key + ", timeout=" + timeoutSeconds + "s");
+                }
+            }
+        } catch (CannotAcquireLockException e) {
+            closeQuietly(connection);
+            throw e;
+        } catch (SQLException | RuntimeException e) {
+            // 락을 잡았는지 알 수 없으므로 커넥션을 풀에 돌려주지 않고 버린다.
+            dataSource.evictConnection(connection);
+            if (e instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new DataAccessResourceFailureException("get_lock 실행 중 오류가 발생했습니다. key=" + key, e);
+        }
+
+        held.put(key, new HeldLock(connection));
+    }
+
+    private void unlock(String key) {
+        Map<String, HeldLock> held = heldLocks.get();
+        HeldLock heldLock = held.get(key);
+        if (heldLock == null || --heldLock.count > 0) {
+            return;
+        }
+
+        held.remove(key);
+        try (PreparedStatement statement = heldLock.connection.prepareStatement(RELEASE_LOCK)) {
+            statement.setString(1, key);
+            statement.executeQuery().close();
+        } catch (SQLException e) {
+            // 풀에 돌려주면 락이 걸린 세션이 재사용되므로 커넥션을 버린다. 세션이 끊기면 MySQL이 락을 풀어준다.
+            dataSource.evictConnection(heldLock.connection);
+            throw new DataAccessResourceFailureException("release_lock 실행 중 오류가 발생했습니다. key=" + key, e);
+        }
+        closeQuietly(heldLock.connection);
+    }
+
+    private Connection getConnection() {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new CannotAcquireLockException("named-lock 커넥션을 얻지 못했습니다.", e);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static class HeldLock {
+        private final Connection connection;
+        private int count = 1;
+
+        HeldLock(Connection connection) {
+            this.connection = connection;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.concurrency.stock.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 경합이 잦은 재고 id 상위 N개를 고정된 메모리(capacity개)로 추적한다. (Space-Saving 알고리즘)
+ *
+ * 꽉 찬 상태에서 새 id가 들어오면 가장 작은 카운터를 내보내고 그 값 + 1에서 시작한다.
+ * 기록은 tryLock으로 하고, 다른 스레드가 기록 중이면 표본을 버린다. 기록 때문에 요청이 기다리는 일은 없다.
+ */
+public class HotKeyTracker {
+    private final int capacity;
+    private final Map<Long, Counter> counters;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder dropped = new LongAdder();
+
+    public HotKeyTracker(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void record(Long id) {
+        if (!lock.tryLock()) {
+            dropped.increment();
+            return;
+        }
+
+        try {
+            Counter counter = counters.get(id);
+            if (counter != null) {
+                counter.count++;
+                return;
+            }
+
+            if (counters.size() < capacity) {
+                counters.put(id, new Counter(id, 1, 0));
+                return;
+            }
+
+            Counter min = counters.values().stream().min(Comparator.comparingLong(c -> c.count)).orElseThrow();
+            counters.remove(min.id);
+            counters.put(id, new Counter(id, min.count + 1, min.count));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 경합 횟수가 많은 순서로 최대 limit개. error는 실제보다 많게 셌을 수 있는 최대치
+     */
+    public List<HotKey> top(int limit) {
+        List<HotKey> hotKeys = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Counter counter : counters.values()) {
+                hotKeys.add(new HotKey(counter.id, counter.count, counter.error));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        hotKeys.sort(Comparator.comparingLong(HotKey::count).reversed());
+        return hotKeys.subList(0, Math.min(limit, hotKeys.size()));
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public record HotKey(Long id, long count, long error) {
+    }
+
+    private static class Counter {
+        private final Long id;
+        private long count;
+        private final long error;
+
+        Counter(Long id, long count, long error) {
+            this.id = id;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.concurrency.stock.metrics;
+
+import com.concurrency.stock.retry.ConflictStatistics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * GET /actuator/lockcontention?limit=10 - 경합이 잦은 재고 id 상위 N개
+ *
+ * hotKeys는 락 대기가 길었던 id, conflicts는 낙관적 락 충돌이 잦았던 id와 포기 횟수, 충돌률이다.
+ */
+@Component
+@Endpoint(id = "lockcontention")
+@RequiredArgsConstructor
+public class LockContentionEndpoint {
+    private final LockMetrics lockMetrics;
+    private final ConflictStatistics conflictStatistics;
+
+    @ReadOperation
+    public Map<String, Object> hotKeys(@Nullable Integer limit) {
+        int top = limit == null ? 10 : limit;
+        return Map.of(
+                "hotKeys", lockMetrics.hotKeys(top),
+                "droppedSamples", lockMetrics.getDroppedSamples(),
+                "conflicts", conflictStatistics.topConflicts(top),
+                "giveUps", conflictStatistics.getGiveUpCount(),
+                "attemptHistogram", conflictStatistics.getAttemptHistogram());
+    }
+}
@@ -0,0 +1,94 @@
+package com.concurrency.stock.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 락 전략 공통 계측.
+ *
+ * 전략마다 recorder를 한 번 만들어 필드로 들고 있으면 요청마다 태그 조회나 Meter 생성이 없다.
+ * 재고 id는 태그로 쓰지 않고(카디널리티 폭발) 대기 시간이 contentionThreshold를 넘긴 경우에만 HotKeyTracker에 기록한다.
+ *
+ * stock.lock.wait    락을 얻기까지 기다린 시간
+ * stock.lock.hold    락을 잡고 있던 시간
+ * stock.lock.retries 재시도 횟수
+ * stock.lock.timeouts 획득 실패(타임아웃) 횟수
+ */
+@Component
+public class LockMetrics {
+    private final MeterRegistry meterRegistry;
+    private final long contentionThresholdNanos;
+    private final HotKeyTracker hotKeyTracker;
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+
+    public LockMetrics(MeterRegistry meterRegistry,
+                       @Value("${stock.metrics.contention-threshold-us:100}") long contentionThresholdMicros,
+                       @Value("${stock.metrics.hot-key-capacity:100}") int hotKeyCapacity) {
+        this.meterRegistry = meterRegistry;
+        this.contentionThresholdNanos = TimeUnit.MICROSECONDS.toNanos(contentionThresholdMicros);
+        this.hotKeyTracker = new HotKeyTracker(hotKeyCapacity);
+    }
+
+    public Recorder recorder(String strategy) {
+        return recorders.computeIfAbsent(strategy, Recorder::new);
+    }
+
+    public List<HotKeyTracker.HotKey> hotKeys(int limit) {
+        return hotKeyTracker.top(limit);
+    }
+
+    public long getDroppedSamples() {
+        return hotKeyTracker.getDropped();
+    }
+
+    public class Recorder {
+        private final Timer wait;
+        private final Timer hold;
+        private final Counter retries;
+        private final Counter timeouts;
+
+        private Recorder(String strategy) {
+            this.wait = Timer.builder("stock.lock.wait").tag("strategy", strategy).publishPercentiles(0.5, 0.99).register(meterRegistry);
+            this.hold = Timer.builder("stock.lock.hold").tag("strategy", strategy).publishPercentiles(0.5, 0.99).register(meterRegistry);
+            this.retries = Counter.builder("stock.lock.retries").tag("strategy", strategy).register(meterRegistry);
+            this.timeouts = Counter.builder("stock.lock.timeouts").tag("strategy", strategy).register(meterRegistry);
+        }
+
+        /**
+         * @param waitStartNanos 락 획득을 시작한 System.nanoTime()
+         * @return 락을 얻은 시각 - recordHold에 넘긴다.
+         */
+        public long recordWait(Long id, long waitStartNanos) {
+            long acquiredNanos = System.nanoTime();
+            long waited = acquiredNanos - waitStartNanos;
+
+            wait.record(waited, TimeUnit.NANOSECONDS);
+            if (waited > contentionThresholdNanos) {
+                hotKeyTracker.record(id);
+            }
+            return acquiredNanos;
+        }
+
+        public void recordHold(long acquiredNanos) {
+            hold.record(System.nanoTime() - acquiredNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void recordRetry(Long id) {
+            retries.increment();
+            hotKeyTracker.record(id);
+        }
+
+        public void recordTimeout(Long id) {
+            timeouts.increment();
+            hotKeyTracker.record(id);
+        }
+    }
+}
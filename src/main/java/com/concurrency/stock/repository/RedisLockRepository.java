@@ -1,27 +1,145 @@
 package com.concurrency.stock.repository;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * SETNX 기반 분산 락.
+ *
+ * 락 값에 획득한 쪽의 토큰을 저장하고, 해제는 토큰이 일치할 때만 삭제하는 Lua 스크립트로 처리한다.
+ * 해제 시 release 채널에 락 키를 발행하므로 대기 중인 스레드는 고정 sleep 없이 바로 깨어나 재시도한다.
+ * 메시지를 놓치거나 TTL 만료로 풀린 경우를 대비해 지수 백오프 + jitter 시간이 지나면 알림 없이도 재시도한다.
+ */
 @Component
 @RequiredArgsConstructor
-public class RedisLockRepository {
-    private RedisTemplate<String, String> redisTemplate;
+public class RedisLockRepository implements MessageListener {
+    private static final String RELEASE_CHANNEL = "stock-lock-release";
+    private static final Duration LOCK_TTL = Duration.ofMillis(3000);
+    private static final long MIN_BACKOFF_MILLIS = 5;
+    private static final long MAX_BACKOFF_MILLIS = 200;
 
-    public Boolean lock(Long key) {
-        return redisTemplate
-                .opsForValue()
-                .setIfAbsent(generateKey(key), "lock", Duration.ofMillis(3000));
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "redis.call('del', KEYS[1]); " +
+                    "redis.call('publish', ARGV[2], KEYS[1]); " +
+                    "return 1 " +
+            "end " +
+            "return 0", Long.class);
+
+    private static final RedisScript<Long> EXTEND_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "end " +
+            "return 0", Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final ConcurrentMap<String, CountDownLatch> releases = new ConcurrentHashMap<>();
+    private final LongAdder commandCount = new LongAdder();
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(RELEASE_CHANNEL));
+    }
+
+    /**
+     * 락을 얻을 때까지 대기한다.
+     *
+     * @return unlock에 넘겨야 하는 소유 토큰
+     */
+    public String lock(Long key) throws InterruptedException {
+        return lock(key, () -> {
+        });
+    }
+
+    /**
+     * @param onRetry 획득에 실패하고 다시 시도하기 전마다 호출된다.
+     */
+    public String lock(Long key, Runnable onRetry) throws InterruptedException {
+        String lockKey = generateKey(key);
+        String token = UUID.randomUUID().toString();
+        long backoff = MIN_BACKOFF_MILLIS;
+
+        while (true) {
+            // 시도 전에 먼저 등록해야 시도와 대기 사이에 발행된 해제 알림을 놓치지 않는다.
+            CountDownLatch released = releases.computeIfAbsent(lockKey, k -> new CountDownLatch(1));
+            if (tryLock(lockKey, token)) {
+                return token;
+            }
+
+            onRetry.run();
+            released.await(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1), TimeUnit.MILLISECONDS);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
     }
 
-    public Boolean unlock(Long key) {
-        return redisTemplate.delete(generateKey(key));
+    /**
+     * 토큰이 일치할 때만, 즉 자신이 잡은 락일 때만 해제한다.
+     */
+    public Boolean unlock(Long key, String token) {
+        commandCount.increment();
+        Long released = redisTemplate.execute(UNLOCK_SCRIPT, List.of(generateKey(key)), token, RELEASE_CHANNEL);
+        return released != null && released == 1L;
+    }
+
+    /**
+     * 토큰이 일치할 때만 TTL을 처음 길이로 다시 늘린다.
+     *
+     * @return false면 이미 만료되어 다른 쪽이 잡았을 수 있는 락
+     */
+    public boolean extend(Long key, String token) {
+        commandCount.increment();
+        Long extended = redisTemplate.execute(EXTEND_SCRIPT, List.of(generateKey(key)), token, String.valueOf(LOCK_TTL.toMillis()));
+        return extended != null && extended == 1L;
+    }
+
+    public Duration getLockTtl() {
+        return LOCK_TTL;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        CountDownLatch released = releases.remove(new String(message.getBody(), StandardCharsets.UTF_8));
+        if (released != null) {
+            released.countDown();
+        }
+    }
+
+    /**
+     * 지금까지 Redis로 보낸 락 명령(SETNX, 해제 스크립트) 수
+     */
+    public long getCommandCount() {
+        return commandCount.sum();
+    }
+
+    private boolean tryLock(String lockKey, String token) {
+        commandCount.increment();
+        return Boolean.TRUE.equals(redisTemplate
+                .opsForValue()
+                .setIfAbsent(lockKey, token, LOCK_TTL));
     }
 
     private String generateKey(Long key) {
-        return key.toString();
+        return "stock-lock:" + key;
     }
 }
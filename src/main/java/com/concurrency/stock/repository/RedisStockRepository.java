@@ -0,0 +1,153 @@
+package com.concurrency.stock.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis에 재고 수량을 두고 Lua 스크립트 한 번으로 검사 + 차감한다.
+ *
+ * 차감 스크립트는 같은 실행 안에서 차감 이벤트를 stock:decreases 스트림에 추가하므로
+ * "Redis 수량 + 스트림에 남은 차감량 = DB 수량" 관계가 항상 유지된다.
+ * 스트림은 DB에 반영된 뒤 ack + 삭제되므로 반영되지 않은 차감만 남는다.
+ */
+@Component
+@RequiredArgsConstructor
+public class RedisStockRepository {
+    public static final long NOT_LOADED = -2;
+    public static final long INSUFFICIENT = -1;
+
+    private static final String STREAM_KEY = "stock:decreases";
+    private static final String GROUP = "stock-sync";
+
+    private static final RedisScript<Long> DECREASE_SCRIPT = new DefaultRedisScript<>(
+            "local quantity = redis.call('get', KEYS[1]) " +
+            "if not quantity then return -2 end " +
+            "quantity = tonumber(quantity) " +
+            "local requested = tonumber(ARGV[2]) " +
+            "if quantity < requested then return -1 end " +
+            "redis.call('decrby', KEYS[1], requested) " +
+            "redis.call('xadd', KEYS[2], '*', 'id', ARGV[1], 'quantity', ARGV[2]) " +
+            "return quantity - requested", Long.class);
+
+    /**
+     * 여러 재고의 수량과 스트림에 남은 차감량을 한 번에(원자적으로) 읽는다.
+     * 스트림은 재고 수와 관계없이 한 번만 훑는다. KEYS는 수량 키들 + 스트림 키, ARGV는 재고 id들이다.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SNAPSHOT_SCRIPT = new DefaultRedisScript<>(
+            "local n = #ARGV " +
+            "local index = {} " +
+            "local pending = {} " +
+            "for i = 1, n do index[ARGV[i]] = i; pending[i] = 0 end " +
+            "for _, entry in ipairs(redis.call('xrange', KEYS[n + 1], '-', '+')) do " +
+            "  local fields = entry[2] " +
+            "  local i = index[fields[2]] " +
+            "  if i then pending[i] = pending[i] + tonumber(fields[4]) end " +
+            "end " +
+            "local result = {} " +
+            "for i = 1, n do " +
+            "  result[2 * i - 1] = redis.call('get', KEYS[i]) or false " +
+            "  result[2 * i] = pending[i] " +
+            "end " +
+            "return result", List.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * @return 차감 후 남은 수량, 재고 부족이면 INSUFFICIENT, Redis에 수량이 없으면 NOT_LOADED
+     */
+    public long decrease(Long id, Long quantity) {
+        Long result = redisTemplate.execute(DECREASE_SCRIPT, List.of(quantityKey(id), STREAM_KEY),
+                id.toString(), quantity.toString());
+        return result == null ? NOT_LOADED : result;
+    }
+
+    /**
+     * 이미 값이 있으면 덮어쓰지 않는다. (Redis가 원본이므로)
+     */
+    public boolean loadIfAbsent(Long id, Long quantity) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(quantityKey(id), quantity.toString()));
+    }
+
+    public void load(Long id, Long quantity) {
+        redisTemplate.opsForValue().set(quantityKey(id), quantity.toString());
+    }
+
+    public Long getQuantity(Long id) {
+        String quantity = redisTemplate.opsForValue().get(quantityKey(id));
+        return quantity == null ? null : Long.parseLong(quantity);
+    }
+
+    /**
+     * @return 재고 id 별 [Redis 수량(없으면 -1), 아직 DB에 반영되지 않은 차감량]
+     */
+    public Map<Long, long[]> snapshot(List<Long> ids) {
+        List<String> keys = new ArrayList<>(ids.size() + 1);
+        ids.forEach(id -> keys.add(quantityKey(id)));
+        keys.add(STREAM_KEY);
+
+        List<?> result = redisTemplate.execute(SNAPSHOT_SCRIPT, keys, ids.stream().map(String::valueOf).toArray());
+        Map<Long, long[]> snapshots = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Object quantity = result.get(2 * i);
+            snapshots.put(ids.get(i), new long[]{
+                    quantity == null ? -1 : Long.parseLong(quantity.toString()),
+                    ((Number) result.get(2 * i + 1)).longValue()
+            });
+        }
+        return snapshots;
+    }
+
+    public void createGroupIfAbsent() {
+        try {
+            redisTemplate.opsForStream().createGroup(STREAM_KEY, ReadOffset.from("0"), GROUP);
+        } catch (RedisSystemException e) {
+            // BUSYGROUP - 이미 있음
+        }
+    }
+
+    /**
+     * 이 consumer에 배달됐지만 ack되지 않은 이벤트를 먼저, 없으면 새 이벤트를 읽는다.
+     */
+    public List<MapRecord<String, Object, Object>> read(String consumer, int count) {
+        List<MapRecord<String, Object, Object>> pending = read(consumer, count, ReadOffset.from("0"));
+        if (pending != null && !pending.isEmpty()) {
+            return pending;
+        }
+
+        List<MapRecord<String, Object, Object>> records = read(consumer, count, ReadOffset.lastConsumed());
+        return records == null ? List.of() : records;
+    }
+
+    public void acknowledge(List<RecordId> recordIds) {
+        RecordId[] ids = recordIds.toArray(RecordId[]::new);
+        redisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP, ids);
+        redisTemplate.opsForStream().delete(STREAM_KEY, ids);
+    }
+
+    private List<MapRecord<String, Object, Object>> read(String consumer, int count, ReadOffset offset) {
+        return redisTemplate.opsForStream().read(
+                Consumer.from(GROUP, consumer),
+                StreamReadOptions.empty().count(count),
+                StreamOffset.create(STREAM_KEY, offset));
+    }
+
+    private String quantityKey(Long id) {
+        return "stock:quantity:" + id;
+    }
+}
@@ -0,0 +1,10 @@
+package com.concurrency.stock.repository;
+
+import com.concurrency.stock.domain.StockDeadLetter;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface StockDeadLetterRepository extends JpaRepository<StockDeadLetter, Long> {
+    List<StockDeadLetter> findAllByStockId(Long stockId);
+}
@@ -0,0 +1,14 @@
+package com.concurrency.stock.repository;
+
+import com.concurrency.stock.domain.StockDecreaseLog;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+
+public interface StockDecreaseLogRepository extends JpaRepository<StockDecreaseLog, String> {
+    @Modifying
+    @Query("delete from StockDecreaseLog l where l.createdAt < :before")
+    int deleteAllCreatedBefore(Instant before);
+}
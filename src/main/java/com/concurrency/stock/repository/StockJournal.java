@@ -0,0 +1,217 @@
+package com.concurrency.stock.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * write-behind 재고 차감을 위한 로컬 append-only 저널.
+ *
+ * 차감이 승인될 때마다 "D {id} {quantity} {crc}", DB 반영이 끝날 때마다 "F {id} {quantity} {crc}" 한 줄을 남긴다.
+ * crc는 앞부분의 CRC32(16진수)이고, 재시작 시 D 합계 - F 합계가 아직 DB에 반영되지 않은 차감량이다.
+ *
+ * 쓰다가 죽으면 마지막 레코드만 잘리거나 쓰레기로 남을 수 있다. ("D 12 35"가 "D 12 3"으로 잘리는 식)
+ * 복구할 때 줄바꿈으로 끝나지 않거나 crc가 맞지 않는 레코드부터 파일 끝까지를 버리고 잘라낸다.
+ * 그 뒤에 온전한 레코드가 있으면 잘린 것이 아니라 손상된 것이므로 버리지 않고 예외를 던진다.
+ *
+ * 쓰기는 OS 페이지 캐시까지만 하고 fsync는 sync()에서 flush 주기마다 한 번 한다. 그 사이 쓴 것이 없으면 fsync를 건너뛴다.
+ * 따라서 프로세스가 죽는 경우에는 유실이 없고, 머신 전원이 나가는 경우 최대 flush 주기만큼 유실될 수 있다.
+ * DB 커밋 직후 F를 쓰기 전에 죽으면 재시작 시 같은 차감이 한 번 더 반영될 수 있다. (at-least-once)
+ */
+@Slf4j
+@Component
+public class StockJournal {
+    private static final String DECREASED = "D";
+    private static final String FLUSHED = "F";
+
+    private final Path path;
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+    private long unflushed;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    public StockJournal(@Value("${stock.write-behind.journal-path:stock-journal.log}") String path) {
+        this.path = Path.of(path);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    /**
+     * 저널을 처음부터 읽어 아직 DB에 반영되지 않은 차감량을 재고 id 별로 돌려준다.
+     */
+    public Map<Long, Long> replay() throws IOException {
+        Map<Long, Long> outstanding = new HashMap<>();
+        byte[] bytes = Files.readAllBytes(path);
+
+        int start = 0;
+        while (start < bytes.length) {
+            int end = indexOfNewline(bytes, start);
+            Entry entry = end < 0 ? null : Entry.parse(new String(bytes, start, end - start, StandardCharsets.US_ASCII));
+            if (entry == null) {
+                discardTail(bytes, start);
+                break;
+            }
+
+            outstanding.merge(entry.id(), entry.delta(), Long::sum);
+            start = end + 1;
+        }
+
+        outstanding.values().removeIf(quantity -> quantity == 0);
+
+        lock.lock();
+        try {
+            unflushed = outstanding.values().stream().mapToLong(Long::longValue).sum();
+        } finally {
+            lock.unlock();
+        }
+        return outstanding;
+    }
+
+    public void append(Long id, Long quantity) {
+        write(DECREASED, id, quantity);
+    }
+
+    public void markFlushed(Long id, Long quantity) {
+        write(FLUSHED, id, quantity);
+    }
+
+    public void sync() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 반영되지 않은 차감이 하나도 없을 때만 저널을 비운다.
+     */
+    public boolean truncateIfFlushed() {
+        lock.lock();
+        try {
+            if (unflushed != 0) {
+                return false;
+            }
+
+            channel.truncate(0);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long size() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * offset부터 끝까지를 버리고 다음 append가 잘린 레코드에 이어 붙지 않도록 파일도 잘라낸다.
+     */
+    private void discardTail(byte[] bytes, int offset) throws IOException {
+        for (int start = offset, end; (end = indexOfNewline(bytes, start)) >= 0; start = end + 1) {
+            if (Entry.parse(new String(bytes, start, end - start, StandardCharsets.US_ASCII)) != null) {
+                throw new IllegalStateException("저널 중간의 레코드가 손상되었습니다. path=" + path + ", offset=" + offset);
+            }
+        }
+
+        log.warn("저널 끝의 불완전한 레코드를 버립니다. path={}, offset={}, 버린 크기={}", path, offset, bytes.length - offset);
+        lock.lock();
+        try {
+            channel.truncate(offset);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int indexOfNewline(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String checksum(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.US_ASCII));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private void write(String type, Long id, Long quantity) {
+        String body = type + " " + id + " " + quantity;
+        ByteBuffer record = ByteBuffer.wrap((body + " " + checksum(body) + "\n").getBytes(StandardCharsets.US_ASCII));
+
+        lock.lock();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            unflushed += DECREASED.equals(type) ? quantity : -quantity;
+            dirty.set(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Entry(Long id, long delta) {
+        /**
+         * crc가 맞고 형식이 올바른 레코드만 돌려주고, 아니면 null
+         */
+        static Entry parse(String line) {
+            int separator = line.lastIndexOf(' ');
+            if (separator < 0 || !checksum(line.substring(0, separator)).equals(line.substring(separator + 1))) {
+                return null;
+            }
+
+            String[] tokens = line.substring(0, separator).split(" ");
+            if (tokens.length != 3 || !(DECREASED.equals(tokens[0]) || FLUSHED.equals(tokens[0]))) {
+                return null;
+            }
+
+            try {
+                long quantity = Long.parseLong(tokens[2]);
+                return new Entry(Long.parseLong(tokens[1]), DECREASED.equals(tokens[0]) ? quantity : -quantity);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
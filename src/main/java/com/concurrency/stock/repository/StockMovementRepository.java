@@ -0,0 +1,23 @@
+package com.concurrency.stock.repository;
+
+import com.concurrency.stock.domain.StockMovement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+    /**
+     * 스냅샷과 아직 합쳐지지 않은 변동을 한 쿼리로 읽는다.
+     * 두 번에 나눠 읽으면 그 사이에 compaction이 커밋될 때 변동이 두 번 세어지거나 빠질 수 있다.
+     */
+    @Query("select s.quantity + coalesce((select sum(m.quantity) from StockMovement m where m.stockId = s.id), 0) " +
+            "from Stock s where s.id = :stockId")
+    Long findAvailableQuantity(Long stockId);
+
+    @Query("select distinct m.stockId from StockMovement m")
+    List<Long> findStockIds();
+
+    List<StockMovement> findAllByStockIdOrderById(Long stockId, Pageable pageable);
+}
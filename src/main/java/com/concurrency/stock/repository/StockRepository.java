@@ -2,10 +2,16 @@ package com.concurrency.stock.repository;
 
 import com.concurrency.stock.domain.Stock;
 import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 public interface StockRepository extends JpaRepository<Stock, Long> {
     /**
      * Thread1이 데이터베이스에 락을 걸고 데이터를 조회한다.
@@ -23,7 +29,96 @@ public interface StockRepository extends JpaRepository<Stock, Long> {
     Stock findByIdWithPessimisticLock(Long id);
 
 
+    /**
+     * 여러 행을 한 번의 SELECT ... FOR UPDATE로 잠근다.
+     * id 순서로 정렬해서 읽으므로 모든 트랜잭션이 같은 순서로 락을 잡고, 서로 다른 주문끼리 데드락이 생기지 않는다.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Stock s where s.id in :ids order by s.id")
+    List<Stock> findAllByIdWithPessimisticLock(Collection<Long> ids);
+
+    /**
+     * id 순서로 id 다음부터 limit개를 읽는다. 전체 재고를 한 번에 올리지 않고 나눠 읽을 때 쓴다.
+     */
+    List<Stock> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * 영속성 컨텍스트를 거치지 않고 DB의 현재 재고 수량만 읽는다.
+     * 커밋 직후 콜백처럼 이전 트랜잭션의 엔티티가 아직 남아 있는 곳에서도 최신 값을 본다.
+     */
+    @Query("select s.quantity from Stock s where s.id = :id")
+    Optional<Long> findQuantityById(Long id);
+
+    /**
+     * Stock.quantity에 재고 조각(StockStripe)으로 옮겨진 수량까지 더한 판매 가능 재고.
+     * 분할된 재고는 Stock.quantity가 0이어도 조각에 재고가 남아 있으므로 품절 여부는 이 값으로 판단한다.
+     */
+    @Query("select s.quantity + coalesce((select sum(t.quantity) from StockStripe t where t.stockId = s.id), 0) from Stock s where s.id = :id")
+    Optional<Long> findAvailableQuantityById(Long id);
+
     @Lock(LockModeType.OPTIMISTIC)
     @Query("select s from Stock s where s.id = :id")
     Stock findByIdWithOptimisticLock(Long id);
+
+
+    /**
+     * 조회 없이 UPDATE 한 번으로 재고를 차감한다.
+     * where 절의 quantity >= :quantity 조건 덕분에 InnoDB가 행 락을 잡은 상태에서 재고를 검사하고 차감하므로
+     * 애플리케이션에서 read-modify-write를 할 필요가 없다.
+     *
+     * 반환값(영향받은 행 수)이 0이면 재고가 부족하거나 존재하지 않는 재고이다.
+     * 벌크 연산은 @Version을 올려주지 않으므로 낙관적 락을 쓰는 쪽과 섞여도 충돌을 감지할 수 있도록 직접 증가시킨다.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Stock s set s.quantity = s.quantity - :quantity, s.version = s.version + 1 " +
+            "where s.id = :id and s.quantity >= :quantity")
+    int decreaseQuantity(Long id, Long quantity);
+
+    /**
+     * 분산 락의 펜싱 토큰을 함께 검사하는 조건부 UPDATE.
+     * 락 임대 시간이 만료된 뒤 늦게 도착한 이전 보유자의 쓰기는 토큰이 더 작으므로 영향받은 행이 0이 된다.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Stock s set s.quantity = s.quantity - :quantity, s.fencingToken = :fencingToken, s.version = s.version + 1 " +
+            "where s.id = :id and s.quantity >= :quantity and (s.fencingToken is null or s.fencingToken <= :fencingToken)")
+    int decreaseQuantityWithFencingToken(Long id, Long quantity, Long fencingToken);
+
+    /**
+     * 판매 가능 재고에서 보류 재고로 옮긴다. 재고 검사는 decreaseQuantity와 같이 where 절에서 한다.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Stock s set s.quantity = s.quantity - :quantity, s.reserved = s.reserved + :quantity, s.version = s.version + 1 " +
+            "where s.id = :id and s.quantity >= :quantity")
+    int reserveQuantity(Long id, Long quantity);
+
+    /**
+     * 결제가 끝난 예약의 보류 재고를 없앤다. 판매 가능 재고는 예약할 때 이미 빠졌으므로 건드리지 않는다.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Stock s set s.reserved = s.reserved - :quantity, s.version = s.version + 1 " +
+            "where s.id = :id and s.reserved >= :quantity")
+    int confirmReserved(Long id, Long quantity);
+
+    /**
+     * 취소되거나 만료된 예약의 보류 재고를 판매 가능 재고로 돌려놓는다.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Stock s set s.quantity = s.quantity + :quantity, s.reserved = s.reserved - :quantity, s.version = s.version + 1 " +
+            "where s.id = :id and s.reserved >= :quantity")
+    int releaseReserved(Long id, Long quantity);
+
+    /**
+     * 변동 기록(StockMovement)의 합을 스냅샷에 더한다. 증가/차감 모두 delta의 부호로 표현한다.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Stock s set s.quantity = s.quantity + :delta, s.version = s.version + 1 where s.id = :id")
+    int applyMovements(Long id, Long delta);
+
+    /**
+     * 재입고. 결과가 음수가 되는 수량은 where 절에서 걸러지므로 영향받은 행 수가 0이 된다.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Stock s set s.quantity = s.quantity + :quantity, s.version = s.version + 1 " +
+            "where s.id = :id and s.quantity + :quantity >= 0")
+    int increaseQuantity(Long id, Long quantity);
 }
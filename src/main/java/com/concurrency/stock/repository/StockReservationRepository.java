@@ -0,0 +1,25 @@
+package com.concurrency.stock.repository;
+
+import com.concurrency.stock.domain.StockReservation;
+import com.concurrency.stock.domain.StockReservation.Status;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+    /**
+     * HELD 상태인 예약만 다른 상태로 바꾼다.
+     * 확정/취소/만료가 동시에 일어나도 하나만 영향받은 행 1을 얻으므로 보류 재고가 두 번 처리되지 않는다.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update StockReservation r set r.status = :status " +
+            "where r.id = :id and r.status = com.concurrency.stock.domain.StockReservation.Status.HELD")
+    int settle(Long id, Status status);
+
+    /**
+     * 시작할 때 만료 큐를 다시 채우기 위해서만 사용한다.
+     */
+    List<StockReservation> findAllByStatus(Status status);
+}
@@ -0,0 +1,32 @@
+package com.concurrency.stock.repository;
+
+import com.concurrency.stock.domain.StockStripe;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface StockStripeRepository extends JpaRepository<StockStripe, Long> {
+    long countByStockId(Long stockId);
+
+    @Query("select coalesce(sum(s.quantity), 0) from StockStripe s where s.stockId = :stockId")
+    Long sumQuantityByStockId(Long stockId);
+
+    /**
+     * 조각 하나에 대해서만 조건부 UPDATE를 한다. 다른 조각에는 락이 걸리지 않는다.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update StockStripe s set s.quantity = s.quantity - :quantity " +
+            "where s.stockId = :stockId and s.stripeIndex = :stripeIndex and s.quantity >= :quantity")
+    int decreaseQuantity(Long stockId, Integer stripeIndex, Long quantity);
+
+    /**
+     * 조각 전체를 stripeIndex 순서로 잠근다. 재분배처럼 여러 조각을 함께 바꿀 때만 사용한다.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from StockStripe s where s.stockId = :stockId order by s.stripeIndex")
+    List<StockStripe> findAllByStockIdWithPessimisticLock(Long stockId);
+}
@@ -0,0 +1,12 @@
+package com.concurrency.stock.retry;
+
+/**
+ * 재시도 사이에 얼마나 기다릴지 정한다.
+ */
+public interface BackoffPolicy {
+    /**
+     * @param previousDelayMillis 직전에 기다린 시간. 첫 재시도라면 0
+     * @return 이번에 기다릴 시간(ms)
+     */
+    long nextDelayMillis(long previousDelayMillis);
+}
@@ -0,0 +1,179 @@
+package com.concurrency.stock.retry;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 재고 id 별 낙관적 락 충돌 통계.
+ *
+ * 충돌률은 시도마다 갱신되는 지수 이동 평균(EWMA)으로 계산한다.
+ * 충돌률이 hotThreshold를 넘으면 hot으로 표시하고, 절반 아래로 떨어져야 해제해서 경계값 근처에서 전략이 흔들리지 않도록 한다.
+ *
+ * 시도 횟수 분포와 포기 횟수는 Micrometer로 내보낸다. (stock.optimistic.attempts, stock.optimistic.give-ups)
+ * 재고 id 별 충돌 수는 태그로 쓰지 않고(카디널리티 폭발) /actuator/lockcontention에서 상위 N개만 보여준다.
+ * hot이 아니면서 evictIdleMillis 동안 기록이 없던 id는 지워서 지금까지 본 모든 id가 계속 쌓이지 않게 한다.
+ */
+public class ConflictStatistics implements MeterBinder {
+    private static final double WEIGHT = 0.1;
+    private static final String[] HISTOGRAM_BUCKETS = {"1", "2", "3", "4-7", "8-15", "16+"};
+
+    private final double hotThreshold;
+    private final long evictIdleNanos;
+    private final ConcurrentMap<Long, IdStatistics> statistics = new ConcurrentHashMap<>();
+    private final LongAdder[] attemptHistogram = new LongAdder[HISTOGRAM_BUCKETS.length];
+    private final LongAdder giveUps = new LongAdder();
+
+    public ConflictStatistics(double hotThreshold, long evictIdleMillis) {
+        this.hotThreshold = hotThreshold;
+        this.evictIdleNanos = TimeUnit.MILLISECONDS.toNanos(evictIdleMillis);
+        for (int i = 0; i < attemptHistogram.length; i++) {
+            attemptHistogram[i] = new LongAdder();
+        }
+    }
+
+    public void recordConflict(Long id) {
+        IdStatistics idStatistics = get(id);
+        idStatistics.conflicts.increment();
+        idStatistics.sample(1.0);
+    }
+
+    /**
+     * @param attempts 성공까지 시도한 횟수
+     */
+    public void recordSuccess(Long id, int attempts) {
+        get(id).sample(0.0);
+        attemptHistogram[bucket(attempts)].increment();
+    }
+
+    /**
+     * 충돌이 일어날 수 없는 방식(coalescing 등)으로 처리된 요청. 이미 통계가 있는 id만 충돌률을 낮춘다.
+     * 이 기록이 없으면 hot으로 판정된 뒤에는 낙관적 락을 쓰지 않으므로 충돌률이 다시 내려가지 않는다.
+     */
+    public void recordUncontended(Long id) {
+        IdStatistics idStatistics = statistics.get(id);
+        if (idStatistics != null) {
+            idStatistics.sample(0.0);
+        }
+    }
+
+    public void recordGiveUp(Long id) {
+        get(id).giveUps.increment();
+        giveUps.increment();
+    }
+
+    public boolean isHot(Long id) {
+        IdStatistics idStatistics = statistics.get(id);
+        return idStatistics != null && idStatistics.hot;
+    }
+
+    public double getConflictRate(Long id) {
+        IdStatistics idStatistics = statistics.get(id);
+        return idStatistics == null ? 0.0 : Double.longBitsToDouble(idStatistics.rate.get());
+    }
+
+    public long getConflictCount(Long id) {
+        IdStatistics idStatistics = statistics.get(id);
+        return idStatistics == null ? 0 : idStatistics.conflicts.sum();
+    }
+
+    public long getGiveUpCount() {
+        return giveUps.sum();
+    }
+
+    /**
+     * 충돌 횟수가 많은 순서로 최대 limit개
+     */
+    public List<IdConflicts> topConflicts(int limit) {
+        List<IdConflicts> conflicts = new ArrayList<>();
+        statistics.forEach((id, idStatistics) -> conflicts.add(new IdConflicts(id, idStatistics.conflicts.sum(),
+                idStatistics.giveUps.sum(), Double.longBitsToDouble(idStatistics.rate.get()), idStatistics.hot)));
+
+        conflicts.sort(Comparator.comparingLong(IdConflicts::conflicts).reversed());
+        return conflicts.subList(0, Math.min(limit, conflicts.size()));
+    }
+
+    @Scheduled(fixedDelayString = "${stock.optimistic.evict-idle-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        statistics.values().removeIf(idStatistics -> !idStatistics.hot && now - idStatistics.lastUsed >= evictIdleNanos);
+    }
+
+    public int getTrackedCount() {
+        return statistics.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("stock.optimistic.give-ups", giveUps, LongAdder::sum).register(registry);
+        for (int i = 0; i < HISTOGRAM_BUCKETS.length; i++) {
+            FunctionCounter.builder("stock.optimistic.attempts", attemptHistogram[i], LongAdder::sum)
+                    .tag("attempts", HISTOGRAM_BUCKETS[i])
+                    .register(registry);
+        }
+    }
+
+    /**
+     * 성공까지 걸린 시도 횟수 분포
+     */
+    public Map<String, Long> getAttemptHistogram() {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < HISTOGRAM_BUCKETS.length; i++) {
+            histogram.put(HISTOGRAM_BUCKETS[i], attemptHistogram[i].sum());
+        }
+        return histogram;
+    }
+
+    private IdStatistics get(Long id) {
+        return statistics.computeIfAbsent(id, key -> new IdStatistics());
+    }
+
+    private static int bucket(int attempts) {
+        if (attempts <= 3) {
+            return Math.max(attempts, 1) - 1;
+        }
+        if (attempts < 8) {
+            return 3;
+        }
+        return attempts < 16 ? 4 : 5;
+    }
+
+    public record IdConflicts(Long id, long conflicts, long giveUps, double conflictRate, boolean hot) {
+    }
+
+    private class IdStatistics {
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder giveUps = new LongAdder();
+        private final AtomicLong rate = new AtomicLong(Double.doubleToLongBits(0.0));
+        private volatile boolean hot;
+        private volatile long lastUsed = System.nanoTime();
+
+        void sample(double conflict) {
+            lastUsed = System.nanoTime();
+            long current;
+            double updated;
+            do {
+                current = rate.get();
+                updated = Double.longBitsToDouble(current) * (1 - WEIGHT) + conflict * WEIGHT;
+            } while (!rate.compareAndSet(current, Double.doubleToLongBits(updated)));
+
+            if (updated > hotThreshold) {
+                hot = true;
+            } else if (updated < hotThreshold / 2) {
+                hot = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.concurrency.stock.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * decorrelated jitter 백오프 - min(cap, random(base, previous * 3))
+ *
+ * 같은 시점에 충돌한 요청들이 같은 시간만큼 자고 다시 함께 충돌하는 retry storm을 막는다.
+ */
+public class DecorrelatedJitterBackoff implements BackoffPolicy {
+    private final long baseMillis;
+    private final long capMillis;
+
+    public DecorrelatedJitterBackoff(long baseMillis, long capMillis) {
+        this.baseMillis = baseMillis;
+        this.capMillis = capMillis;
+    }
+
+    @Override
+    public long nextDelayMillis(long previousDelayMillis) {
+        long upper = Math.max(baseMillis, previousDelayMillis * 3);
+        return Math.min(capMillis, ThreadLocalRandom.current().nextLong(baseMillis, upper + 1));
+    }
+}
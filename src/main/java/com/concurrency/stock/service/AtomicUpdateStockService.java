@@ -0,0 +1,103 @@
+package com.concurrency.stock.service;
+
+import com.concurrency.stock.admission.SoldOutRegistry;
+import com.concurrency.stock.domain.OutOfStockException;
+import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.repository.StockRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+@Service
+@RequiredArgsConstructor
+public class AtomicUpdateStockService implements StockDecreaseStrategy {
+    private final StockRepository stockRepository;
+    private final StockAvailabilityService stockAvailabilityService;
+    private final SoldOutRegistry soldOutRegistry;
+
+    @Override
+    @Transactional
+    public void decrease(Long id, Long quantity) {
+        StockDecreaseStrategy.requirePositive(id, quantity);
+
+        // 조건부 UPDATE 한 번으로 재고 검사 + 차감
+        int updated = stockRepository.decreaseQuantity(id, quantity);
+
+        // 영향받은 행이 없으면 재고 부족
+        if (updated == 0) {
+            throw new OutOfStockException();
+        }
+
+        // 벌크 UPDATE는 엔티티 리스너를 거치지 않으므로 조회 캐시를 직접 무효화
+        stockAvailabilityService.evictAfterCommit(id);
+    }
+
+    /**
+     * 펜싱 토큰이 현재 행의 토큰보다 작으면(만료된 락 보유자의 쓰기) ConcurrencyFailureException으로 거부한다.
+     */
+    @Transactional
+    public void decrease(Long id, Long quantity, Long fencingToken) {
+        StockDecreaseStrategy.requirePositive(id, quantity);
+        int updated = stockRepository.decreaseQuantityWithFencingToken(id, quantity, fencingToken);
+        if (updated > 0) {
+            stockAvailabilityService.evictAfterCommit(id);
+            return;
+        }
+
+        // 실패 원인 구분
+        Stock stock = stockRepository.findById(id).orElseThrow();
+        if (stock.getFencingToken() != null && stock.getFencingToken() > fencingToken) {
+            throw new ConcurrencyFailureException("만료된 락으로 쓰기를 시도했습니다. id=" + id
+                    + ", token=" + fencingToken + ", current=" + stock.getFencingToken());
+        }
+        throw new OutOfStockException();
+    }
+
+    /**
+     * id 순서대로 조건부 UPDATE를 실행해서 다른 주문과 같은 순서로 행 락을 잡는다.
+     * 하나라도 부족하면 예외로 트랜잭션 전체가 롤백된다.
+     * 음수 수량은 차감이 아니라 증가가 되므로 UPDATE 전에 모두 거부한다.
+     */
+    @Transactional
+    public void decreaseAll(Map<Long, Long> quantities) {
+        quantities.forEach(StockDecreaseStrategy::requirePositive);
+        new TreeMap<>(quantities).forEach(this::decrease);
+    }
+
+    /**
+     * decreaseAll과 같지만 재고마다 펜싱 토큰을 검사한다. 하나라도 만료된 토큰이면 전체가 롤백된다.
+     *
+     * @param fencingTokens 재고 id 별 펜싱 토큰
+     */
+    @Transactional
+    public void decreaseAll(Map<Long, Long> quantities, Map<Long, Long> fencingTokens) {
+        quantities.forEach(StockDecreaseStrategy::requirePositive);
+        new TreeMap<>(quantities).forEach((id, quantity) -> decrease(id, quantity, fencingTokens.get(id)));
+    }
+
+    /**
+     * 재입고. 커밋 후에 품절 표시를 지운다.
+     */
+    @Transactional
+    public void increase(Long id, Long quantity) {
+        StockDecreaseStrategy.requirePositive(id, quantity);
+        if (stockRepository.increaseQuantity(id, quantity) == 0) {
+            throw new NoSuchElementException("존재하지 않는 재고입니다. id=" + id);
+        }
+
+        stockAvailabilityService.evictAfterCommit(id);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                soldOutRegistry.clear(id);
+            }
+        });
+    }
+}
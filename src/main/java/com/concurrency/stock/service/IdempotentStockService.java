@@ -0,0 +1,97 @@
+package com.concurrency.stock.service;
+
+import com.concurrency.stock.domain.OutOfStockException;
+import com.concurrency.stock.domain.StockDecreaseLog;
+import com.concurrency.stock.repository.StockDecreaseLogRepository;
+import com.concurrency.stock.repository.StockRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * 요청 id로 중복 차감을 막는 재고 차감.
+ *
+ * 클라이언트가 타임아웃 후 같은 요청 id로 재시도하면, 처음 요청이 실제로 반영됐는지와 상관없이 한 번만 차감된다.
+ * 차감 UPDATE와 요청 id 기록 INSERT를 한 트랜잭션에서 하므로, 기록이 남은 요청은 반드시 반영된 요청이다.
+ * 중복 요청은 INSERT가 기본 키 충돌로 실패하고 트랜잭션이 롤백되므로 재고가 두 번 줄지 않는다.
+ *
+ * 처음 요청은 조회 없이 UPDATE + INSERT만 하고, 최근 결과는 메모리에 남겨서 재시도는 대부분 DB까지 가지 않는다.
+ * 메모리에 없는 재시도(다른 인스턴스, 재시작)만 기록 테이블에서 결과를 읽는다.
+ */
+@Slf4j
+@Service
+public class IdempotentStockService {
+    private final StockRepository stockRepository;
+    private final StockDecreaseLogRepository stockDecreaseLogRepository;
+    private final StockAvailabilityService stockAvailabilityService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+    private final Cache<String, Boolean> recent;
+
+    public IdempotentStockService(StockRepository stockRepository,
+                                  StockDecreaseLogRepository stockDecreaseLogRepository,
+                                  StockAvailabilityService stockAvailabilityService,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${stock.idempotency.window-size:100000}") long windowSize,
+                                  @Value("${stock.idempotency.window-ttl-ms:600000}") long windowTtlMillis,
+                                  @Value("${stock.idempotency.retention-ms:86400000}") long retentionMillis) {
+        this.stockRepository = stockRepository;
+        this.stockDecreaseLogRepository = stockDecreaseLogRepository;
+        this.stockAvailabilityService = stockAvailabilityService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = Duration.ofMillis(retentionMillis);
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(windowSize)
+                .expireAfterWrite(Duration.ofMillis(windowTtlMillis))
+                .build();
+    }
+
+    public void decrease(Long id, Long quantity, String requestId) {
+        StockDecreaseStrategy.requirePositive(id, quantity);
+
+        Boolean succeeded = recent.getIfPresent(requestId);
+
+        if (succeeded == null) {
+            try {
+                succeeded = transactionTemplate.execute(status -> {
+                    boolean decreased = stockRepository.decreaseQuantity(id, quantity) > 0;
+
+                    // 재고 부족도 결과로 남겨서 재시도가 다른 결과를 받지 않게 한다.
+                    stockDecreaseLogRepository.saveAndFlush(new StockDecreaseLog(requestId, id, quantity, decreased));
+                    if (decreased) {
+                        stockAvailabilityService.evictAfterCommit(id);
+                    }
+                    return decreased;
+                });
+            } catch (DataIntegrityViolationException e) {
+                // 이미 처리된 요청 - 처음 요청의 결과를 따른다.
+                succeeded = stockDecreaseLogRepository.findById(requestId).orElseThrow(() -> e).isSucceeded();
+            }
+
+            recent.put(requestId, succeeded);
+        }
+
+        if (!succeeded) {
+            throw new OutOfStockException();
+        }
+    }
+
+    /**
+     * 재시도가 더 이상 오지 않을 만큼 오래된 기록을 지운다.
+     */
+    @Scheduled(fixedDelayString = "${stock.idempotency.cleanup-interval-ms:3600000}")
+    public void cleanUp() {
+        Integer deleted = transactionTemplate.execute(status ->
+                stockDecreaseLogRepository.deleteAllCreatedBefore(Instant.now().minus(retention)));
+        log.debug("오래된 차감 기록 {}건 삭제", deleted);
+    }
+}
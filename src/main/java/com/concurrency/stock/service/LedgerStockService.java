@@ -0,0 +1,114 @@
+package com.concurrency.stock.service;
+
+import com.concurrency.stock.domain.OutOfStockException;
+import com.concurrency.stock.domain.StockMovement;
+import com.concurrency.stock.repository.StockMovementRepository;
+import com.concurrency.stock.repository.StockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 재고 차감을 stock 행 UPDATE 대신 stock_movement INSERT로 기록한다.
+ *
+ * INSERT끼리는 같은 행 락을 다투지 않으므로 인기 상품의 차감이 한 행에 줄 서지 않는다.
+ * 판매 가능 재고는 Stock.quantity(스냅샷) + 아직 합쳐지지 않은 변동의 합이고,
+ * compact가 주기적으로 변동을 스냅샷에 합치고 지워서 합산할 행 수를 작게 유지한다.
+ *
+ * INSERT는 재고를 검사하지 못하므로 초과 판매는 재고 id 별 승인 토큰(AtomicLong)으로 막는다.
+ * 토큰은 WriteBehindStockService와 같이 인스턴스 메모리에 있으므로 한 재고는 한 인스턴스에서만 처리해야 한다.
+ */
+@Slf4j
+@Service
+public class LedgerStockService implements StockDecreaseStrategy {
+    private final StockRepository stockRepository;
+    private final StockMovementRepository stockMovementRepository;
+    private final StockAvailabilityService stockAvailabilityService;
+    private final TransactionTemplate transactionTemplate;
+    private final int compactionBatchSize;
+
+    private final ConcurrentMap<Long, AtomicLong> tokens = new ConcurrentHashMap<>();
+
+    public LedgerStockService(StockRepository stockRepository,
+                              StockMovementRepository stockMovementRepository,
+                              StockAvailabilityService stockAvailabilityService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${stock.ledger.compaction-batch-size:10000}") int compactionBatchSize) {
+        this.stockRepository = stockRepository;
+        this.stockMovementRepository = stockMovementRepository;
+        this.stockAvailabilityService = stockAvailabilityService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.compactionBatchSize = compactionBatchSize;
+    }
+
+    @Override
+    public void decrease(Long id, Long quantity) {
+        StockDecreaseStrategy.requirePositive(id, quantity);
+        AtomicLong counter = tokens.computeIfAbsent(id, this::load);
+
+        // 토큰을 먼저 확보한 요청만 INSERT한다.
+        long current;
+        do {
+            current = counter.get();
+            if (current - quantity < 0) {
+                throw new OutOfStockException();
+            }
+        } while (!counter.compareAndSet(current, current - quantity));
+
+        try {
+            stockMovementRepository.save(new StockMovement(id, -quantity));
+        } catch (RuntimeException e) {
+            counter.addAndGet(quantity);
+            throw e;
+        }
+    }
+
+    public long getAvailable(Long id) {
+        return stockMovementRepository.findAvailableQuantity(id);
+    }
+
+    /**
+     * 쌓인 변동을 재고 id 별로 스냅샷에 합치고 지운다.
+     */
+    @Scheduled(fixedDelayString = "${stock.ledger.compaction-interval-ms:1000}")
+    public void compact() {
+        for (Long stockId : stockMovementRepository.findStockIds()) {
+            try {
+                compact(stockId);
+            } catch (RuntimeException e) {
+                log.warn("재고 변동 합치기 실패 - 다음 주기에 재시도합니다. stockId={}", stockId, e);
+            }
+        }
+    }
+
+    private void compact(Long stockId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // 다른 인스턴스의 compaction과 같은 변동을 두 번 합치지 않도록 스냅샷 행을 잠근다.
+            stockRepository.findByIdWithPessimisticLock(stockId);
+
+            // 읽은 행만 id로 지운다. 범위로 지우면 늦게 커밋된 더 작은 id의 변동이 합쳐지지 않고 지워질 수 있다.
+            List<StockMovement> movements = stockMovementRepository.findAllByStockIdOrderById(stockId, PageRequest.of(0, compactionBatchSize));
+            if (movements.isEmpty()) {
+                return;
+            }
+
+            long delta = movements.stream().mapToLong(StockMovement::getQuantity).sum();
+            stockRepository.applyMovements(stockId, delta);
+            stockMovementRepository.deleteAllByIdInBatch(movements.stream().map(StockMovement::getId).toList());
+            stockAvailabilityService.evictAfterCommit(stockId);
+        });
+    }
+
+    private AtomicLong load(Long id) {
+        return new AtomicLong(getAvailable(id));
+    }
+}
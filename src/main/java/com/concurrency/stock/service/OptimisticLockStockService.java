@@ -8,10 +8,11 @@ import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
-public class OptimisticLockStockService {
+public class OptimisticLockStockService implements StockDecreaseStrategy {
 
     private final StockRepository stockRepository;
 
+    @Override
     @Transactional
     public void decrease(Long id, Long quantity) {
         // Stock 조회
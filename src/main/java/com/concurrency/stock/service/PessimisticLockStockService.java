@@ -1,24 +1,107 @@
 package com.concurrency.stock.service;
 
 import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.metrics.LockMetrics;
 import com.concurrency.stock.repository.StockRepository;
 import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 @Service
-@RequiredArgsConstructor
-public class PessimisticLockStockService {
+public class PessimisticLockStockService implements StockDecreaseStrategy {
     private final StockRepository stockRepository;
+    private final LockMetrics.Recorder lockRecorder;
+
+    public PessimisticLockStockService(StockRepository stockRepository, LockMetrics lockMetrics) {
+        this.stockRepository = stockRepository;
+        this.lockRecorder = lockMetrics.recorder("pessimistic");
+    }
 
+    @Override
     @Transactional
     public void decrease(Long id, Long quantity) {
+        StockDecreaseStrategy.requirePositive(id, quantity);
+
         // Stock 조회
-        Stock stock = stockRepository.findByIdWithPessimisticLock(id);
+        Stock stock = lockForUpdate(id);
 
         // 재고 감소
         stock.decrease(quantity);
 
         // 갱신된 값을 저장 - 더티체킹
     }
+
+    /**
+     * 같은 재고에 대한 여러 차감 요청을 락 한 번, 트랜잭션 한 번으로 처리한다.
+     * 요청 순서대로 적용하며 재고가 부족한 요청만 건너뛴다.
+     *
+     * @return 요청 별 차감 성공 여부
+     */
+    @Transactional
+    public boolean[] decreaseEach(Long id, List<Long> quantities) {
+        quantities.forEach(quantity -> StockDecreaseStrategy.requirePositive(id, quantity));
+
+        // Stock 조회 - 배치 전체에 대해 한 번만 락을 잡는다.
+        Stock stock = lockForUpdate(id);
+
+        boolean[] accepted = new boolean[quantities.size()];
+        for (int i = 0; i < quantities.size(); i++) {
+            Long quantity = quantities.get(i);
+            if (stock.getQuantity() - quantity < 0) {
+                continue;
+            }
+
+            // 재고 감소
+            stock.decrease(quantity);
+            accepted[i] = true;
+        }
+
+        // 갱신된 값을 저장 - 더티체킹
+        return accepted;
+    }
+
+    /**
+     * 주문 한 건의 여러 재고를 한 트랜잭션으로 차감한다. 하나라도 부족하면 전부 롤백된다.
+     *
+     * @param quantities 재고 id 별 차감 수량
+     */
+    @Transactional
+    public void decreaseAll(Map<Long, Long> quantities) {
+        quantities.forEach(StockDecreaseStrategy::requirePositive);
+
+        // Stock 조회 - id 순서로 한 번에 락
+        List<Stock> stocks = stockRepository.findAllByIdWithPessimisticLock(quantities.keySet());
+        if (stocks.size() != quantities.size()) {
+            throw new NoSuchElementException("존재하지 않는 재고가 포함되어 있습니다. ");
+        }
+
+        // 재고 감소
+        for (Stock stock : stocks) {
+            stock.decrease(quantities.get(stock.getId()));
+        }
+
+        // 갱신된 값을 저장 - 더티체킹
+    }
+
+    /**
+     * FOR UPDATE 대기 시간을 기록하고, 락이 풀리는 커밋/롤백 시점에 보유 시간을 기록한다.
+     */
+    private Stock lockForUpdate(Long id) {
+        long waitStart = System.nanoTime();
+        Stock stock = stockRepository.findByIdWithPessimisticLock(id);
+        long acquired = lockRecorder.recordWait(id, waitStart);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lockRecorder.recordHold(acquired);
+            }
+        });
+        return stock;
+    }
 }
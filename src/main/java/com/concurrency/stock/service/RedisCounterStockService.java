@@ -0,0 +1,187 @@
+package com.concurrency.stock.service;
+
+import com.concurrency.stock.domain.OutOfStockException;
+import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.repository.RedisStockRepository;
+import com.concurrency.stock.repository.StockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Redis를 재고의 원본으로 사용한다.
+ *
+ * 차감은 Lua 스크립트 한 번(왕복 한 번)으로 끝나고 분산 락도 필요 없다.
+ * DB는 Redis 스트림을 읽어서 재고 id 별로 합친 뒤 UPDATE 한 번씩으로 비동기 반영한다.
+ * DB 반영 후 ack 전에 죽으면 같은 이벤트가 다시 반영될 수 있고(at-least-once), 이는 reconcile에서 drift로 드러난다.
+ *
+ * 재고 전체를 한 번에 읽지 않는다. 시작할 때는 id 순서로 batchSize개씩 나눠 올리고,
+ * reconcile은 지난 reconcile 이후 consumer group으로 이 consumer에 배달된 이벤트의 재고만 batchSize개씩 비교한다.
+ */
+@Slf4j
+@Service
+public class RedisCounterStockService implements StockDecreaseStrategy {
+    private final RedisStockRepository redisStockRepository;
+    private final StockRepository stockRepository;
+    private final StockAvailabilityService stockAvailabilityService;
+    private final TransactionTemplate transactionTemplate;
+    private final String consumer;
+    private final int batchSize;
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    /**
+     * 지난 reconcile 이후 sync로 반영한 재고 id. syncLock을 잡은 상태에서만 사용한다.
+     */
+    private final Set<Long> touched = new HashSet<>();
+
+    public RedisCounterStockService(RedisStockRepository redisStockRepository,
+                                    StockRepository stockRepository,
+                                    StockAvailabilityService stockAvailabilityService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${stock.redis-counter.consumer:${HOSTNAME:stock}}") String consumer,
+                                    @Value("${stock.redis-counter.batch-size:1000}") int batchSize) {
+        this.redisStockRepository = redisStockRepository;
+        this.stockRepository = stockRepository;
+        this.stockAvailabilityService = stockAvailabilityService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.consumer = consumer;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 시작할 때 DB 재고를 Redis로 올린다. 이미 Redis에 있는 재고는 Redis가 최신이므로 건드리지 않는다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        redisStockRepository.createGroupIfAbsent();
+
+        List<Stock> page;
+        long after = 0;
+        do {
+            page = stockRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(batchSize));
+            for (Stock stock : page) {
+                redisStockRepository.loadIfAbsent(stock.getId(), stock.getQuantity());
+                after = stock.getId();
+            }
+        } while (page.size() == batchSize);
+    }
+
+    @Override
+    public void decrease(Long id, Long quantity) {
+        StockDecreaseStrategy.requirePositive(id, quantity);
+        long remaining = redisStockRepository.decrease(id, quantity);
+
+        if (remaining == RedisStockRepository.NOT_LOADED) {
+            // 시작 후에 생성된 재고
+            redisStockRepository.loadIfAbsent(id, stockRepository.findById(id).orElseThrow().getQuantity());
+            remaining = redisStockRepository.decrease(id, quantity);
+        }
+
+        if (remaining == RedisStockRepository.INSUFFICIENT) {
+            throw new OutOfStockException();
+        }
+    }
+
+    public Long getQuantity(Long id) {
+        return redisStockRepository.getQuantity(id);
+    }
+
+    /**
+     * DB 수량으로 Redis 수량을 덮어쓴다. 입고 직후처럼 반영되지 않은 차감이 없을 때만 사용해야 한다.
+     */
+    public void load(Long id) {
+        redisStockRepository.load(id, stockRepository.findById(id).orElseThrow().getQuantity());
+    }
+
+    /**
+     * 스트림의 차감 이벤트를 재고 id 별로 합쳐 한 트랜잭션으로 DB에 반영한다.
+     *
+     * @return 반영한 이벤트 수
+     */
+    @Scheduled(fixedDelayString = "${stock.redis-counter.sync-interval-ms:100}")
+    public int sync() {
+        syncLock.lock();
+        try {
+            List<MapRecord<String, Object, Object>> records = redisStockRepository.read(consumer, batchSize);
+            if (records.isEmpty()) {
+                return 0;
+            }
+
+            Map<Long, Long> decreases = new HashMap<>();
+            for (MapRecord<String, Object, Object> record : records) {
+                Map<Object, Object> fields = record.getValue();
+                decreases.merge(Long.parseLong(fields.get("id").toString()),
+                        Long.parseLong(fields.get("quantity").toString()), Long::sum);
+            }
+
+            transactionTemplate.executeWithoutResult(status -> decreases.forEach((id, quantity) -> {
+                if (stockRepository.decreaseQuantity(id, quantity) == 0) {
+                    log.error("Redis 차감을 DB에 반영하지 못했습니다. id={}, quantity={}", id, quantity);
+                }
+                stockAvailabilityService.evictAfterCommit(id);
+            }));
+
+            redisStockRepository.acknowledge(records.stream().map(MapRecord::getId).toList());
+            touched.addAll(decreases.keySet());
+            return records.size();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * 반영되지 않은 이벤트를 모두 반영한 뒤 그동안 차감된 재고만 DB 수량과 (Redis 수량 + 스트림에 남은 차감량)을 비교한다.
+     *
+     * @return 차이가 있는 재고 id 별 (DB 수량 - Redis 기준 수량)
+     */
+    @Scheduled(fixedDelayString = "${stock.redis-counter.reconcile-interval-ms:60000}")
+    public Map<Long, Long> reconcile() {
+        syncLock.lock();
+        try {
+            while (sync() == batchSize) {
+                // 밀린 이벤트가 없을 때까지 반영
+            }
+
+            List<Long> ids = new ArrayList<>(touched);
+            touched.clear();
+
+            Map<Long, Long> drifts = new HashMap<>();
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                Map<Long, long[]> snapshots = redisStockRepository.snapshot(chunk);
+
+                for (Stock stock : stockRepository.findAllById(chunk)) {
+                    long[] snapshot = snapshots.get(stock.getId());
+                    if (snapshot[0] < 0) {
+                        continue;
+                    }
+
+                    long drift = stock.getQuantity() - (snapshot[0] + snapshot[1]);
+                    if (drift != 0) {
+                        drifts.put(stock.getId(), drift);
+                        log.warn("재고 불일치 id={}, db={}, redis={}, 미반영={}", stock.getId(), stock.getQuantity(), snapshot[0], snapshot[1]);
+                    }
+                }
+            }
+            return drifts;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+}
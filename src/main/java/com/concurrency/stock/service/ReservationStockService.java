@@ -0,0 +1,210 @@
+package com.concurrency.stock.service;
+
+import com.concurrency.stock.admission.SoldOutRegistry;
+import com.concurrency.stock.domain.OutOfStockException;
+import com.concurrency.stock.domain.StockReservation;
+import com.concurrency.stock.domain.StockReservation.Status;
+import com.concurrency.stock.repository.StockRepository;
+import com.concurrency.stock.repository.StockReservationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 결제 동안 재고를 보류했다가 확정/취소하는 예약 방식.
+ *
+ * 차감 후 결제 실패 시 다시 증가시키는 보상 방식은 실패한 주문마다 stock 행을 두 번 쓴다.
+ * 예약은 reserve에서 quantity를 reserved로 옮기고, 확정은 reserved만 줄이고, 취소/만료는 quantity로 돌려놓는다.
+ *
+ * 만료는 테이블을 주기적으로 스캔하지 않고 예약마다 DelayQueue에 넣어두고 만료 시각에 하나씩 꺼내서 처리한다.
+ * 확정/취소된 예약은 holds에서 빠지므로 큐에서 꺼내도 DB에 가지 않는다.
+ * 다른 인스턴스에서 확정/취소한 예약은 settle의 조건(status = HELD) 때문에 만료 처리되지 않는다.
+ */
+@Slf4j
+@Service
+public class ReservationStockService {
+    private final StockRepository stockRepository;
+    private final StockReservationRepository stockReservationRepository;
+    private final StockAvailabilityService stockAvailabilityService;
+    private final SoldOutRegistry soldOutRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration defaultTtl;
+
+    private final DelayQueue<Hold> expiries = new DelayQueue<>();
+    private final ConcurrentMap<Long, Hold> holds = new ConcurrentHashMap<>();
+    private final Thread expiryThread;
+
+    public ReservationStockService(StockRepository stockRepository,
+                                   StockReservationRepository stockReservationRepository,
+                                   StockAvailabilityService stockAvailabilityService,
+                                   SoldOutRegistry soldOutRegistry,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${stock.reservation.ttl-ms:600000}") long ttlMillis) {
+        this.stockRepository = stockRepository;
+        this.stockReservationRepository = stockReservationRepository;
+        this.stockAvailabilityService = stockAvailabilityService;
+        this.soldOutRegistry = soldOutRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultTtl = Duration.ofMillis(ttlMillis);
+
+        this.expiryThread = new Thread(this::expireLoop, "stock-reservation-expiry");
+        this.expiryThread.setDaemon(true);
+        this.expiryThread.start();
+    }
+
+    /**
+     * 재시작 전에 만들어진 예약을 만료 큐에 다시 넣는다. 이미 만료 시각이 지난 예약은 바로 처리된다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        for (StockReservation reservation : stockReservationRepository.findAllByStatus(Status.HELD)) {
+            schedule(reservation.getId(), reservation.getExpiresAt());
+        }
+    }
+
+    public Long reserve(Long stockId, Long quantity) {
+        return reserve(stockId, quantity, defaultTtl);
+    }
+
+    /**
+     * 재고를 보류하고 예약 id를 반환한다. ttl 안에 확정되지 않으면 자동으로 풀린다.
+     */
+    public Long reserve(Long stockId, Long quantity, Duration ttl) {
+        Instant expiresAt = Instant.now().plus(ttl);
+
+        return transactionTemplate.execute(status -> {
+            if (stockRepository.reserveQuantity(stockId, quantity) == 0) {
+                throw new OutOfStockException();
+            }
+
+            StockReservation reservation = stockReservationRepository.save(new StockReservation(stockId, quantity, expiresAt));
+            stockAvailabilityService.evictAfterCommit(stockId);
+
+            // 롤백된 예약이 만료 큐에 남지 않도록 커밋 후에 등록
+            Long id = reservation.getId();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedule(id, expiresAt);
+                }
+            });
+            return id;
+        });
+    }
+
+    public void confirm(Long reservationId) {
+        if (!settle(reservationId, Status.CONFIRMED)) {
+            throw new IllegalStateException("보류 중인 예약이 아닙니다. id=" + reservationId);
+        }
+    }
+
+    public void cancel(Long reservationId) {
+        if (!settle(reservationId, Status.CANCELLED)) {
+            throw new IllegalStateException("보류 중인 예약이 아닙니다. id=" + reservationId);
+        }
+    }
+
+    public int getPendingExpiries() {
+        return holds.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiryThread.interrupt();
+    }
+
+    private boolean settle(Long reservationId, Status to) {
+        Boolean settled = transactionTemplate.execute(status -> {
+            if (stockReservationRepository.settle(reservationId, to) == 0) {
+                return false;
+            }
+
+            StockReservation reservation = stockReservationRepository.findById(reservationId).orElseThrow();
+            Long stockId = reservation.getStockId();
+            Long quantity = reservation.getQuantity();
+
+            int updated = to == Status.CONFIRMED
+                    ? stockRepository.confirmReserved(stockId, quantity)
+                    : stockRepository.releaseReserved(stockId, quantity);
+            if (updated == 0) {
+                throw new IllegalStateException("보류 재고가 예약 수량보다 적습니다. stockId=" + stockId);
+            }
+
+            stockAvailabilityService.evictAfterCommit(stockId);
+            if (to != Status.CONFIRMED) {
+                // 보류가 풀려서 다시 살 수 있는 재고
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        soldOutRegistry.clear(stockId);
+                    }
+                });
+            }
+            return true;
+        });
+
+        if (Boolean.TRUE.equals(settled)) {
+            holds.remove(reservationId);
+            return true;
+        }
+        return false;
+    }
+
+    private void schedule(Long reservationId, Instant expiresAt) {
+        Hold hold = new Hold(reservationId, expiresAt.toEpochMilli());
+        if (holds.putIfAbsent(reservationId, hold) == null) {
+            expiries.put(hold);
+        }
+    }
+
+    private void expireLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Hold hold;
+            try {
+                hold = expiries.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            // 이 인스턴스에서 이미 확정/취소된 예약
+            if (!holds.remove(hold.reservationId(), hold)) {
+                continue;
+            }
+
+            try {
+                settle(hold.reservationId(), Status.EXPIRED);
+            } catch (RuntimeException e) {
+                // DB 장애 시 잠시 후 다시 시도한다.
+                log.warn("예약 만료 처리 실패 - 다시 시도합니다. id={}", hold.reservationId(), e);
+                schedule(hold.reservationId(), Instant.now().plusSeconds(1));
+            }
+        }
+    }
+
+    private record Hold(Long reservationId, long expiresAtMillis) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAtMillis, ((Hold) other).expiresAtMillis);
+        }
+    }
+}
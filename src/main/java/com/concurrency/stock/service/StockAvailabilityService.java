@@ -0,0 +1,101 @@
+package com.concurrency.stock.service;
+
+import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.repository.StockRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 재고 조회용 로컬 캐시.
+ *
+ * 상품 페이지의 재고 조회는 차감보다 훨씬 많으므로 크기와 TTL이 제한된 Caffeine 캐시에서 읽는다.
+ * 엔티티를 통한 변경(더티체킹)은 커밋 직후 StockChangeListener가 새 값을 넣고, 이때 Stock.version이 더 큰 값만 반영한다.
+ * 벌크 UPDATE처럼 엔티티를 거치지 않는 변경은 커밋 직후 캐시에서 지운다.
+ * 두 경우 모두 쓰기 트랜잭션이 반환되기 전에 반영되므로, 쓰기 결과를 본 쪽이 이후에 더 오래된 값을 읽는 일은 없다.
+ *
+ * 캐시 적중률/크기는 cache.* 메트릭, 적중한 값의 나이는 stock.availability.age, 메모리 사용량 추정치는 stock.availability.memory로 확인한다.
+ */
+@Service
+public class StockAvailabilityService {
+    /**
+     * 엔트리 하나의 대략적인 크기 (캐시 노드 + Long 키 + Availability)
+     */
+    private static final long ESTIMATED_ENTRY_BYTES = 120;
+
+    private final StockRepository stockRepository;
+    private final Cache<Long, Availability> cache;
+    private final Timer age;
+
+    public StockAvailabilityService(StockRepository stockRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${stock.availability-cache.maximum-size:100000}") long maximumSize,
+                                    @Value("${stock.availability-cache.ttl-ms:1000}") long ttlMillis) {
+        this.stockRepository = stockRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .recordStats()
+                .build();
+        this.age = Timer.builder("stock.availability.age").register(meterRegistry);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stock.availability");
+        Gauge.builder("stock.availability.memory", cache, c -> c.estimatedSize() * ESTIMATED_ENTRY_BYTES)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public long getAvailable(Long id) {
+        Availability availability = cache.get(id, this::load);
+        age.record(System.nanoTime() - availability.loadedAt(), TimeUnit.NANOSECONDS);
+        return availability.quantity();
+    }
+
+    /**
+     * 커밋된 엔티티 값으로 캐시를 갱신한다. 이미 더 새로운 version이 들어있으면 무시한다.
+     */
+    public void update(Stock stock) {
+        Availability updated = new Availability(stock.getQuantity(), stock.getVersion(), System.nanoTime());
+        cache.asMap().merge(stock.getId(), updated,
+                (current, candidate) -> candidate.version() >= current.version() ? candidate : current);
+    }
+
+    /**
+     * 현재 트랜잭션이 커밋되면 캐시에서 지운다. 트랜잭션 밖이면 바로 지운다.
+     */
+    public void evictAfterCommit(Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidate(id);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.invalidate(id);
+            }
+        });
+    }
+
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    private Availability load(Long id) {
+        Stock stock = stockRepository.findById(id).orElseThrow();
+        return new Availability(stock.getQuantity(), stock.getVersion(), System.nanoTime());
+    }
+
+    private record Availability(long quantity, long version, long loadedAt) {
+    }
+}
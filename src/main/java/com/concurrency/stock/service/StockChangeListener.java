@@ -0,0 +1,67 @@
+package com.concurrency.stock.service;
+
+import com.concurrency.stock.admission.SoldOutRegistry;
+import com.concurrency.stock.domain.Stock;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Stock 엔티티 변경을 커밋 후에 조회 캐시와 품절 목록으로 전달한다.
+ * 도메인이 서비스 패키지에 의존하지 않도록 META-INF/orm.xml에서 Stock에 등록한다.
+ *
+ * 엔티티 리스너는 EntityManagerFactory가 만들어질 때 생성되므로
+ * 리포지토리에 의존하는 서비스는 ObjectProvider로 늦게 가져와야 순환 참조가 생기지 않는다.
+ */
+@Component
+public class StockChangeListener {
+    private final ObjectProvider<StockAvailabilityService> stockAvailabilityService;
+    private final ObjectProvider<SoldOutRegistry> soldOutRegistry;
+
+    public StockChangeListener(ObjectProvider<StockAvailabilityService> stockAvailabilityService,
+                               ObjectProvider<SoldOutRegistry> soldOutRegistry) {
+        this.stockAvailabilityService = stockAvailabilityService;
+        this.soldOutRegistry = soldOutRegistry;
+    }
+
+    @PostUpdate
+    public void onUpdate(Stock stock) {
+        afterCommit(() -> {
+            stockAvailabilityService.getObject().update(stock);
+
+            if (stock.getQuantity() == 0) {
+                // 재고 조각으로 옮겨서 0이 된 경우도 있으므로 조각까지 더해서 다시 확인한다.
+                soldOutRegistry.getObject().markIfSoldOut(stock.getId());
+            } else {
+                soldOutRegistry.getObject().clear(stock.getId());
+            }
+        });
+    }
+
+    /**
+     * DB를 다시 만든 경우 이전에 품절로 기록된 id가 새 재고에 재사용될 수 있다.
+     */
+    @PostPersist
+    public void onPersist(Stock stock) {
+        if (stock.getQuantity() > 0) {
+            afterCommit(() -> soldOutRegistry.getObject().clear(stock.getId()));
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
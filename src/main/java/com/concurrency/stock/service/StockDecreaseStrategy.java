@@ -0,0 +1,20 @@
+package com.concurrency.stock.service;
+
+/**
+ * 재고 차감 방식. 락 방식이 달라도 호출하는 쪽은 이 인터페이스만 알면 된다.
+ *
+ * 구현체마다 재고의 원본이 다를 수 있다. (DB 행, write-behind 메모리 카운터, Redis 카운터)
+ * 원본이 DB 행인 구현끼리만 같은 재고에 섞어서 사용할 수 있다.
+ *
+ * 조건부 UPDATE, CAS, Lua 스크립트 모두 "재고 >= 수량"만 검사하므로 음수 수량은 차감이 아니라 증가가 된다.
+ * 재고의 원본을 직접 바꾸는 구현은 차감 전에 requirePositive로 거부한다.
+ */
+public interface StockDecreaseStrategy {
+    void decrease(Long id, Long quantity) throws InterruptedException;
+
+    static void requirePositive(Long id, Long quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("수량은 1개 이상이어야 합니다. id=" + id + ", quantity=" + quantity);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.concurrency.stock.service;
+
+import com.concurrency.stock.domain.Stock;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 재고 대량 등록.
+ *
+ * chunkSize개씩 나눠 트랜잭션을 커밋하고, 청크마다 flush + clear해서 영속성 컨텍스트가 커지지 않게 한다.
+ * perf 프로파일의 hibernate.jdbc.batch_size, rewriteBatchedStatements와 함께 쓰면 청크 하나가 multi-row INSERT 몇 번으로 나간다.
+ */
+@Service
+public class StockImportService {
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public StockImportService(EntityManager entityManager,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${stock.import.chunk-size:1000}") int chunkSize) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 스트림을 chunkSize개씩 끊어서 저장한다. 스트림 전체를 모으지 않으므로 요청 본문을 읽으면서 바로 넘길 수 있다.
+     * 이미 커밋된 청크는 이후 청크가 실패해도 남는다.
+     *
+     * @return 등록한 재고 수
+     */
+    public int importAll(Stream<Stock> stocks) {
+        Iterator<Stock> iterator = stocks.iterator();
+        List<Stock> chunk = new ArrayList<>(chunkSize);
+        int imported = 0;
+
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == chunkSize || !iterator.hasNext()) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    chunk.forEach(entityManager::persist);
+                    entityManager.flush();
+                    entityManager.clear();
+                });
+                imported += chunk.size();
+                chunk.clear();
+            }
+        }
+        return imported;
+    }
+}
@@ -7,11 +7,21 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 @RequiredArgsConstructor
 @Service
-public class StockService {
+public class StockService implements StockDecreaseStrategy {
     private final StockRepository stockRepository;
 
+    /**
+     * synchronized 대신 ReentrantLock을 사용한다.
+     * Java 21의 가상 스레드는 synchronized 블록 안에서 블로킹(DB I/O)되면 캐리어 스레드에 고정(pinning)되지만
+     * ReentrantLock은 대기 중에 캐리어 스레드를 놓아준다. 상호 배제 범위는 synchronized와 같다.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Override
     @Transactional
     public void decrease(Long id, Long quantity) {
         // Stock 조회
@@ -24,26 +34,35 @@ public class StockService {
     }
 
     @Transactional
-    public synchronized void decreaseSynchronized(Long id, Long quantity) {
-        // Stock 조회
-        Stock stock = stockRepository.findById(id).orElseThrow();
+    public void decreaseSynchronized(Long id, Long quantity) {
+        lock.lock();
+        try {
+            // Stock 조회
+            Stock stock = stockRepository.findById(id).orElseThrow();
 
-        // 재고 감소
-        stock.decrease(quantity);
+            // 재고 감소
+            stock.decrease(quantity);
 
-        // 갱신된 값을 저장 - 더티체킹
+            // 갱신된 값을 저장 - 더티체킹
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void decreaseSynchronizedWithoutTransactional(Long id, Long quantity) {
-        // Stock 조회
-        Stock stock = stockRepository.findById(id).orElseThrow();
-
-        // 재고 감소
-        stock.decrease(quantity);
+    public void decreaseSynchronizedWithoutTransactional(Long id, Long quantity) {
+        lock.lock();
+        try {
+            // Stock 조회
+            Stock stock = stockRepository.findById(id).orElseThrow();
 
-        // 갱신된 값을 저장
-        stockRepository.saveAndFlush(stock);
+            // 재고 감소
+            stock.decrease(quantity);
 
+            // 갱신된 값을 저장
+            stockRepository.saveAndFlush(stock);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
@@ -0,0 +1,127 @@
+package com.concurrency.stock.service;
+
+import com.concurrency.stock.domain.OutOfStockException;
+import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.domain.StockStripe;
+import com.concurrency.stock.repository.StockRepository;
+import com.concurrency.stock.repository.StockStripeRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 재고 한 행을 K개의 조각(StockStripe)으로 나눠서 차감한다.
+ *
+ * 요청은 스레드 id로 조각 하나에 배정되어 그 조각만 조건부 UPDATE 하므로 서로 다른 조각끼리는 경합하지 않는다.
+ * 배정된 조각이 부족하면 옆 조각에서 빌려오고, 어느 한 조각으로도 부족하면 전체 조각을 잠그고 재분배한다.
+ *
+ * split 이후 Stock.quantity는 0이 되고 재고는 조각들이 나눠 가진다. 가용 재고는 getAvailable로 조회해야 한다.
+ */
+@Service
+public class StripedStockService implements StockDecreaseStrategy {
+    private final StockRepository stockRepository;
+    private final StockStripeRepository stockStripeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrentMap<Long, Integer> stripeCounts = new ConcurrentHashMap<>();
+
+    public StripedStockService(StockRepository stockRepository,
+                               StockStripeRepository stockStripeRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.stockRepository = stockRepository;
+        this.stockStripeRepository = stockStripeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 재고를 stripes개의 조각으로 나눈다. 나머지는 앞쪽 조각부터 하나씩 더 준다.
+     */
+    public void split(Long stockId, int stripes) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Stock stock = stockRepository.findByIdWithPessimisticLock(stockId);
+            if (stockStripeRepository.countByStockId(stockId) > 0) {
+                throw new IllegalStateException("이미 분할된 재고입니다. id=" + stockId);
+            }
+
+            long total = stock.getQuantity();
+            List<StockStripe> stockStripes = new ArrayList<>(stripes);
+            for (int i = 0; i < stripes; i++) {
+                long share = total / stripes + (i < total % stripes ? 1 : 0);
+                stockStripes.add(new StockStripe(stockId, i, share));
+            }
+
+            stock.decrease(total);
+            stockStripeRepository.saveAll(stockStripes);
+        });
+        stripeCounts.put(stockId, stripes);
+    }
+
+    /**
+     * 조각들을 다시 Stock 한 행으로 합친다.
+     */
+    public void merge(Long stockId) {
+        stripeCounts.remove(stockId);
+        transactionTemplate.executeWithoutResult(status -> {
+            Stock stock = stockRepository.findByIdWithPessimisticLock(stockId);
+            List<StockStripe> stockStripes = stockStripeRepository.findAllByStockIdWithPessimisticLock(stockId);
+
+            stock.increase(stockStripes.stream().mapToLong(StockStripe::getQuantity).sum());
+            stockStripeRepository.deleteAll(stockStripes);
+        });
+    }
+
+    @Override
+    public void decrease(Long stockId, Long quantity) {
+        StockDecreaseStrategy.requirePositive(stockId, quantity);
+        int stripes = stripeCounts.computeIfAbsent(stockId, id -> (int) stockStripeRepository.countByStockId(id));
+        if (stripes == 0) {
+            stripeCounts.remove(stockId);
+            throw new IllegalStateException("분할되지 않은 재고입니다. id=" + stockId);
+        }
+
+        // 배정된 조각부터 시작해서 옆 조각에서 빌려온다.
+        int home = (int) (Thread.currentThread().threadId() % stripes);
+        for (int i = 0; i < stripes; i++) {
+            int stripeIndex = (home + i) % stripes;
+            if (tryDecrease(stockId, stripeIndex, quantity)) {
+                return;
+            }
+        }
+
+        // 어느 조각 하나로도 부족하면 전체를 잠그고 합쳐서 차감한 뒤 남은 재고를 고르게 재분배한다.
+        rebalanceAndDecrease(stockId, quantity);
+    }
+
+    public long getAvailable(Long stockId) {
+        return stockRepository.findById(stockId).orElseThrow().getQuantity()
+                + stockStripeRepository.sumQuantityByStockId(stockId);
+    }
+
+    private boolean tryDecrease(Long stockId, int stripeIndex, Long quantity) {
+        Integer updated = transactionTemplate.execute(status ->
+                stockStripeRepository.decreaseQuantity(stockId, stripeIndex, quantity));
+        return updated != null && updated > 0;
+    }
+
+    private void rebalanceAndDecrease(Long stockId, Long quantity) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<StockStripe> stockStripes = stockStripeRepository.findAllByStockIdWithPessimisticLock(stockId);
+
+            long total = stockStripes.stream().mapToLong(StockStripe::getQuantity).sum();
+            if (total - quantity < 0) {
+                throw new OutOfStockException();
+            }
+
+            long remaining = total - quantity;
+            int stripes = stockStripes.size();
+            for (int i = 0; i < stripes; i++) {
+                long share = remaining / stripes + (i < remaining % stripes ? 1 : 0);
+                stockStripes.get(i).assign(share);
+            }
+        });
+    }
+}
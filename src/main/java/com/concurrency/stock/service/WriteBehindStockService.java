@@ -0,0 +1,179 @@
+package com.concurrency.stock.service;
+
+import com.concurrency.stock.domain.OutOfStockException;
+import com.concurrency.stock.domain.StockDeadLetter;
+import com.concurrency.stock.repository.StockDeadLetterRepository;
+import com.concurrency.stock.repository.StockJournal;
+import com.concurrency.stock.repository.StockRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 재고 차감 승인은 JVM 메모리의 카운터로 하고, DB 반영은 모아서 나중에 한다. (write-behind)
+ *
+ * 요청마다 stock 행에 트랜잭션을 걸지 않으므로 InnoDB 행 락 직렬화에 묶이지 않는다.
+ * 대신 flush 주기마다 재고 id 당 UPDATE 한 번으로 그동안의 차감량을 합쳐서 반영한다.
+ * 승인된 차감은 StockJournal에 먼저 기록되므로 프로세스가 죽어도 재시작 시 복구된다.
+ *
+ * 메모리 카운터가 기준이므로 한 재고를 여러 인스턴스가 나눠 처리하거나 다른 전략과 섞어 쓰면 안 된다.
+ * 그래도 DB가 다른 경로로 바뀌어서 반영이 거부되면, 그 차감을 StockDeadLetter로 남기고 메모리 카운터를 DB 기준으로 낮춘다.
+ */
+@Slf4j
+@Service
+public class WriteBehindStockService implements StockDecreaseStrategy {
+    private final StockRepository stockRepository;
+    private final StockJournal stockJournal;
+    private final StockDeadLetterRepository stockDeadLetterRepository;
+    private final StockAvailabilityService stockAvailabilityService;
+    private final TransactionTemplate transactionTemplate;
+    private final long journalCompactionBytes;
+
+    private final ConcurrentMap<Long, AtomicLong> available = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public WriteBehindStockService(StockRepository stockRepository,
+                                   StockJournal stockJournal,
+                                   StockDeadLetterRepository stockDeadLetterRepository,
+                                   StockAvailabilityService stockAvailabilityService,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${stock.write-behind.journal-compaction-bytes:67108864}") long journalCompactionBytes) {
+        this.stockRepository = stockRepository;
+        this.stockJournal = stockJournal;
+        this.stockDeadLetterRepository = stockDeadLetterRepository;
+        this.stockAvailabilityService = stockAvailabilityService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journalCompactionBytes = journalCompactionBytes;
+    }
+
+    /**
+     * 지난 실행에서 DB에 반영하지 못한 차감을 저널에서 읽어 반영한다.
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        Map<Long, Long> outstanding = stockJournal.replay();
+
+        outstanding.forEach((id, quantity) -> {
+            if (!apply(id, quantity)) {
+                deadLetter(id, quantity, "저널 복구 실패 - 재고가 없거나 부족합니다.");
+            }
+            stockJournal.markFlushed(id, quantity);
+        });
+
+        stockJournal.sync();
+        stockJournal.truncateIfFlushed();
+    }
+
+    @Override
+    public void decrease(Long id, Long quantity) {
+        StockDecreaseStrategy.requirePositive(id, quantity);
+        AtomicLong counter = available.computeIfAbsent(id, this::load);
+
+        // 재고 검사 + 차감을 CAS로 처리 - 0 미만으로 내려가는 차감은 승인하지 않는다.
+        long current;
+        do {
+            current = counter.get();
+            if (current - quantity < 0) {
+                throw new OutOfStockException();
+            }
+        } while (!counter.compareAndSet(current, current - quantity));
+
+        try {
+            stockJournal.append(id, quantity);
+        } catch (RuntimeException e) {
+            // 저널에 남기지 못한 차감은 승인하지 않는다.
+            counter.addAndGet(quantity);
+            throw e;
+        }
+
+        pending.computeIfAbsent(id, key -> new LongAdder()).add(quantity);
+    }
+
+    public long getAvailable(Long id) {
+        return available.computeIfAbsent(id, this::load).get();
+    }
+
+    /**
+     * 그동안 쌓인 차감량을 재고 id 당 UPDATE 한 번으로 반영한다.
+     */
+    @Scheduled(fixedDelayString = "${stock.write-behind.flush-interval-ms:10}")
+    public void flush() {
+        pending.forEach((id, adder) -> {
+            long quantity = adder.sumThenReset();
+            if (quantity == 0) {
+                return;
+            }
+
+            try {
+                if (!apply(id, quantity)) {
+                    // 메모리 카운터가 재고 검사를 하므로 여기에 오면 DB가 다른 경로로 변경된 것이다.
+                    deadLetter(id, quantity, "write-behind 반영 실패 - DB 재고가 부족합니다.");
+                    resync(id);
+                }
+                stockJournal.markFlushed(id, quantity);
+            } catch (RuntimeException e) {
+                // DB 장애 시 다음 주기에 다시 반영한다.
+                adder.add(quantity);
+                log.warn("write-behind 반영 실패 - 다음 주기에 재시도합니다. id={}, quantity={}", id, quantity, e);
+            }
+        });
+
+        stockJournal.sync();
+
+        if (stockJournal.size() > journalCompactionBytes) {
+            stockJournal.truncateIfFlushed();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private boolean apply(Long id, Long quantity) {
+        Integer updated = transactionTemplate.execute(status -> {
+            stockAvailabilityService.evictAfterCommit(id);
+            return stockRepository.decreaseQuantity(id, quantity);
+        });
+        return updated != null && updated > 0;
+    }
+
+    /**
+     * 저장에 실패하면 예외가 그대로 나가서 저널에 반영 완료로 기록되지 않고 다음 주기에 다시 시도된다.
+     */
+    private void deadLetter(Long id, Long quantity, String reason) {
+        log.error("{} id={}, quantity={}", reason, id, quantity);
+        stockDeadLetterRepository.save(new StockDeadLetter(id, quantity, reason));
+    }
+
+    /**
+     * 메모리 카운터를 (DB 재고 - 아직 반영하지 않은 차감)까지 낮춘다.
+     * 동시에 승인되는 차감과 순서가 어긋나도 카운터를 올리지는 않으므로 초과 승인은 생기지 않는다.
+     */
+    private void resync(Long id) {
+        AtomicLong counter = available.get(id);
+        if (counter == null) {
+            return;
+        }
+
+        LongAdder unapplied = pending.get(id);
+        long expected = stockRepository.findQuantityById(id).orElse(0L) - (unapplied == null ? 0 : unapplied.sum());
+        counter.accumulateAndGet(Math.max(expected, 0), Math::min);
+    }
+
+    private AtomicLong load(Long id) {
+        return new AtomicLong(stockRepository.findById(id).orElseThrow().getQuantity());
+    }
+}
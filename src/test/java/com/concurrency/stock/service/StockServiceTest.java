@@ -1,22 +1,63 @@
 package com.concurrency.stock.service;
 
+import com.concurrency.stock.admission.SoldOutRegistry;
+import com.concurrency.stock.admission.StockRequestRejectedException;
+import com.concurrency.stock.domain.OutOfStockException;
 import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.facade.AdmissionControlStockFacade;
+import com.concurrency.stock.facade.CoalescingStockFacade;
+import com.concurrency.stock.facade.HierarchicalLockStockFacade;
 import com.concurrency.stock.facade.LettuceLockStockFacade;
 import com.concurrency.stock.facade.NamedLockStockFacade;
+import com.concurrency.stock.facade.ReactiveRedissonLockStockFacade;
 import com.concurrency.stock.facade.RedissonLockStockFacade;
+import com.concurrency.stock.lock.HierarchicalLockManager;
+import com.concurrency.stock.lock.NamedLockExecutor;
+import com.concurrency.stock.metrics.LockContentionEndpoint;
+import com.concurrency.stock.repository.RedisLockRepository;
+import com.concurrency.stock.repository.StockDeadLetterRepository;
+import com.concurrency.stock.repository.StockJournal;
 import com.concurrency.stock.repository.StockRepository;
 import com.concurrency.stock.facade.OptimisticLockStockFacade;
+import com.concurrency.stock.retry.ConflictStatistics;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import reactor.core.publisher.Flux;
 
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 public class StockServiceTest {
@@ -27,6 +68,21 @@ public class StockServiceTest {
     @Autowired
     private PessimisticLockStockService pessimisticLockStockService;
 
+    @Autowired
+    private AtomicUpdateStockService atomicUpdateStockService;
+
+    @Autowired
+    private WriteBehindStockService writeBehindStockService;
+
+    @Autowired
+    private CoalescingStockFacade coalescingStockFacade;
+
+    @Autowired
+    private StripedStockService stripedStockService;
+
+    @Autowired
+    private RedisCounterStockService redisCounterStockService;
+
     @Autowired
     private OptimisticLockStockFacade optimisticLockStockFacade;
 
@@ -38,9 +94,61 @@ public class StockServiceTest {
 
     @Autowired
     private RedissonLockStockFacade redissonLockStockFacade;
+
+    @Autowired
+    private ReactiveRedissonLockStockFacade reactiveRedissonLockStockFacade;
+
+    @Autowired
+    private RedisLockRepository redisLockRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ConflictStatistics conflictStatistics;
+
+    @Autowired
+    private LockContentionEndpoint lockContentionEndpoint;
+
+    @Autowired
+    private NamedLockExecutor namedLockExecutor;
+
+    @Autowired
+    private HierarchicalLockStockFacade hierarchicalLockStockFacade;
+
+    @Autowired
+    private HierarchicalLockManager hierarchicalLockManager;
+
+    @Autowired
+    private DataSource dataSource;
+
     @Autowired
     private StockRepository stockRepository;
 
+    @Autowired
+    private StockAvailabilityService stockAvailabilityService;
+
+    @Autowired
+    private ReservationStockService reservationStockService;
+
+    @Autowired
+    private IdempotentStockService idempotentStockService;
+
+    @Autowired
+    private LedgerStockService ledgerStockService;
+
+    @Autowired
+    private AdmissionControlStockFacade admissionControlStockFacade;
+
+    @Autowired
+    private SoldOutRegistry soldOutRegistry;
+
+    @Autowired
+    private StockImportService stockImportService;
+
+    @Autowired
+    private StockDeadLetterRepository stockDeadLetterRepository;
+
     @BeforeEach
     public void before() {
         stockRepository.saveAndFlush(new Stock(1L, 100L));
@@ -286,6 +394,654 @@ public class StockServiceTest {
      * 별도의 라이브러리를 사용해야하며
      * lock을 라이브러리 차원에서 제공해주기 때문에 사용방법을 공부해야한다.
      */
+
+    @Test
+    public void 동시에_100개의_요청_atomic_update() throws InterruptedException {
+        int threadCount = 100;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.submit(() -> {
+                try {
+                    atomicUpdateStockService.decrease(1L, 1L);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await();
+
+        Stock stock = stockRepository.findById(1L).orElseThrow();
+        assertEquals(0, stock.getQuantity());
+    }
+    /**
+     * 조회 후 차감(SELECT ... FOR UPDATE + UPDATE)은 요청마다 왕복이 두 번이고 행 락을 커밋까지 들고 있는다.
+     * 조건부 UPDATE는 왕복 한 번에 검사와 차감이 끝나므로 락을 잡는 시간이 짧다.
+     * 단, 차감 전 엔티티에 대한 도메인 검증 로직을 태울 수 없다는 점은 감안해야 한다.
+     * 두 방식의 처리량 비교는 StockDecreaseBenchmark(-PjmhStrategies=pessimistic,atomic)로 측정한다.
+     */
+
+    private void runConcurrently(int threadCount, Runnable task) throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await();
+        executorService.shutdown();
+    }
+
+
+    @Test
+    public void 동시에_100000개의_요청_write_behind() throws InterruptedException {
+        Stock stock = stockRepository.saveAndFlush(new Stock(4L, 100_000L));
+
+        runConcurrently(100_000, () -> writeBehindStockService.decrease(stock.getId(), 1L));
+        writeBehindStockService.flush();
+
+        assertEquals(0, writeBehindStockService.getAvailable(stock.getId()));
+        assertEquals(0, stockRepository.findById(stock.getId()).orElseThrow().getQuantity());
+    }
+    /**
+     * 차감 승인은 메모리의 CAS 한 번과 저널 append 한 번이므로 DB 락 대기가 없다.
+     * DB에는 flush 주기(10ms)마다 UPDATE 한 번씩만 나가므로 100000건이 수백 건의 UPDATE로 합쳐진다.
+     */
+
+    @Test
+    public void write_behind_반영이_거부된_차감은_dead_letter로_남고_카운터를_DB에_맞춤() {
+        Stock stock = stockRepository.saveAndFlush(new Stock(4L, 10L));
+        assertEquals(10, writeBehindStockService.getAvailable(stock.getId()));
+
+        // 메모리 카운터를 거치지 않고 DB 재고를 줄인다.
+        atomicUpdateStockService.decrease(stock.getId(), 8L);
+        writeBehindStockService.decrease(stock.getId(), 5L);
+        writeBehindStockService.flush();
+
+        assertEquals(1, stockDeadLetterRepository.findAllByStockId(stock.getId()).size());
+        assertEquals(2, writeBehindStockService.getAvailable(stock.getId()));
+        assertEquals(2, stockRepository.findById(stock.getId()).orElseThrow().getQuantity());
+    }
+    /**
+     * 반영하지 못한 차감을 조용히 버리지 않고 기록하며, 메모리 카운터가 DB보다 많은 재고를 계속 승인하지 않도록 낮춘다.
+     */
+
+    @Test
+    public void 저널_끝의_잘린_레코드는_버리고_복구() throws IOException {
+        Path path = Files.createTempFile("stock-journal", ".log");
+        try {
+            StockJournal journal = new StockJournal(path.toString());
+            journal.open();
+            journal.append(12L, 35L);
+            journal.append(13L, 7L);
+            journal.markFlushed(13L, 7L);
+            journal.close();
+
+            // "D 12 35 ..."를 쓰다가 "D 12 3"까지만 남은 경우
+            Files.write(path, "D 12 3".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+            journal = new StockJournal(path.toString());
+            journal.open();
+            assertEquals(Map.of(12L, 35L), journal.replay());
+
+            // 잘린 부분을 지웠으므로 이어서 쓴 레코드도 온전히 읽힌다.
+            journal.append(12L, 1L);
+            Files.write(path, new byte[]{0, 0, 0, '\n', 'x'}, StandardOpenOption.APPEND);
+            journal.close();
+
+            journal = new StockJournal(path.toString());
+            journal.open();
+            assertEquals(Map.of(12L, 36L), journal.replay());
+            journal.close();
+
+            // 온전한 레코드 앞의 손상은 잘린 것이 아니므로 버리지 않는다.
+            Files.write(path, ("D 12 99 0\n" + Files.readString(path)).getBytes(StandardCharsets.US_ASCII));
+            StockJournal corrupted = new StockJournal(path.toString());
+            corrupted.open();
+            assertThrows(IllegalStateException.class, corrupted::replay);
+            corrupted.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+    /**
+     * 레코드마다 crc를 붙이므로 잘린 숫자가 다른 수량으로 읽히거나 쓰레기가 NumberFormatException으로 기동을 막지 않는다.
+     * 버린 자리까지 파일을 잘라내야 다음 append가 잘린 레코드에 이어 붙어 함께 버려지지 않는다.
+     */
+
+
+    @Test
+    public void 동시에_100개의_요청_coalescing() throws InterruptedException {
+        int threadCount = 100;
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.submit(() -> {
+                try {
+                    coalescingStockFacade.decrease(1L, 1L);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await();
+
+        Stock stock = stockRepository.findById(1L).orElseThrow();
+        assertEquals(0, stock.getQuantity());
+    }
+    /**
+     * 비관적 락과 같은 SELECT ... FOR UPDATE를 쓰지만 요청 하나가 아니라 배치 하나가 락을 잡는다.
+     * 재고가 부족한 요청만 개별적으로 실패하고 같은 배치의 나머지 요청은 정상 처리된다.
+     */
+
+
+    @Test
+    public void 재고_분할_개수와_관계없이_정확히_차감() throws InterruptedException {
+        int requestCount = 1000;
+
+        for (int stripes : new int[]{1, 2, 4, 8, 16}) {
+            Stock stock = stockRepository.saveAndFlush(new Stock(5L, (long) requestCount));
+            stripedStockService.split(stock.getId(), stripes);
+
+            runConcurrently(requestCount, () -> stripedStockService.decrease(stock.getId(), 1L));
+
+            assertEquals(0, stripedStockService.getAvailable(stock.getId()));
+        }
+    }
+    /**
+     * 조각마다 행이 다르므로 조각 수만큼 UPDATE가 동시에 진행될 수 있다.
+     * 재고가 바닥에 가까워지면 빌려오기와 재분배가 늘어나서 분할 효과가 줄어든다.
+     * 조각 수(1, 2, 4, 8, 16) 별 처리량은 StockDecreaseBenchmark(-PjmhStrategies=striped)로 측정한다.
+     */
+
+    @Test
+    public void 분할된_재고는_품절로_막히지_않고_모두_팔린_뒤에_품절() {
+        Stock stock = stockRepository.saveAndFlush(new Stock(5L, 2L));
+        stripedStockService.split(stock.getId(), 2);
+
+        // split 후 Stock.quantity는 0이지만 조각에 재고가 있으므로 품절이 아니다.
+        assertFalse(soldOutRegistry.isSoldOut(stock.getId()));
+        stripedStockService.decrease(stock.getId(), 1L);
+        stripedStockService.decrease(stock.getId(), 1L);
+
+        assertThrows(OutOfStockException.class, () -> stripedStockService.decrease(stock.getId(), 1L));
+        assertTrue(soldOutRegistry.isSoldOut(stock.getId()));
+    }
+    /**
+     * 품절 여부를 Stock.quantity만으로 판단하면 split 직후 품절로 기록되어 SoldOutGuardAspect가 모든 차감을 거절한다.
+     * 조각의 수량까지 더해서 판단하므로 조각이 모두 비었을 때만 품절이 된다.
+     */
+
+
+    @Test
+    public void optimistic_lock_재고_부족은_재시도하지_않는다() {
+        assertThrows(RuntimeException.class, () -> optimisticLockStockFacade.decrease(1L, 101L));
+
+        Stock stock = stockRepository.findById(1L).orElseThrow();
+        assertEquals(100, stock.getQuantity());
+    }
+    /**
+     * 재고 부족은 몇 번을 다시 시도해도 결과가 같으므로 ObjectOptimisticLockingFailureException만 재시도한다.
+     * 이전에는 모든 Exception을 잡아서 재고가 부족하면 무한히 재시도했다.
+     */
+
+
+    @Test
+    public void 플랫폼_스레드_vs_가상_스레드() throws InterruptedException {
+        int requestCount = 1000;
+
+        for (boolean virtual : new boolean[]{false, true}) {
+            Stock stock = stockRepository.saveAndFlush(new Stock(6L, (long) requestCount));
+            ExecutorService executorService = virtual
+                    ? Executors.newVirtualThreadPerTaskExecutor()
+                    : Executors.newFixedThreadPool(200);
+            CountDownLatch latch = new CountDownLatch(requestCount);
+            AtomicInteger inFlight = new AtomicInteger();
+            AtomicInteger maxInFlight = new AtomicInteger();
+
+            for (int i = 0; i < requestCount; i++) {
+                executorService.submit(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        lettuceLockStockFacade.decrease(stock.getId(), 1L);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    } finally {
+                        inFlight.decrementAndGet();
+                        latch.countDown();
+                    }
+                });
+            }
+
+            latch.await();
+            executorService.shutdown();
+
+            if (virtual) {
+                assertTrue(maxInFlight.get() > 200);
+            } else {
+                assertTrue(maxInFlight.get() <= 200);
+            }
+            assertEquals(0, stockRepository.findById(stock.getId()).orElseThrow().getQuantity());
+        }
+    }
+    /**
+     * 플랫폼 스레드 풀은 풀 크기만큼만 동시에 락을 기다릴 수 있고 나머지는 큐에서 기다린다.
+     * 가상 스레드는 락 대기 중에 캐리어 스레드를 놓아주므로 모든 요청이 동시에 대기할 수 있다.
+     * 실제 서버에서는 spring.threads.virtual.enabled(STOCK_VIRTUAL_THREADS=true)로 Tomcat 요청 처리를 가상 스레드로 바꾼다.
+     */
+
+
+    @Test
+    public void 동시에_100개의_요청_reactive_redisson() {
+        Flux.range(0, 100)
+                .flatMap(i -> reactiveRedissonLockStockFacade.decrease(1L, 1L), 100)
+                .blockLast();
+
+        Stock stock = stockRepository.findById(1L).orElseThrow();
+        assertEquals(0, stock.getQuantity());
+        assertNotNull(stock.getFencingToken());
+    }
+    /**
+     * 100개의 요청이 동시에 락을 기다리지만 대기 중인 요청은 스레드를 잡고 있지 않는다.
+     * 스레드는 락을 잡은 뒤 DB 차감을 하는 동안에만 사용된다.
+     * RedissonLockStockFacade와 같은 펜싱 토큰 카운터로 쓰므로 행에 마지막 보유자의 토큰이 남는다.
+     */
+
+
+    @Test
+    public void 동시에_100개의_요청_redis_counter() throws InterruptedException {
+        redisCounterStockService.load(1L);
+
+        runConcurrently(100, () -> redisCounterStockService.decrease(1L, 1L));
+        redisCounterStockService.reconcile();
+
+        assertEquals(0, redisCounterStockService.getQuantity(1L));
+        assertEquals(0, stockRepository.findById(1L).orElseThrow().getQuantity());
+        assertTrue(redisCounterStockService.reconcile().isEmpty());
+    }
+    /**
+     * 락 획득/해제 없이 Lua 스크립트 한 번으로 차감이 끝난다.
+     * DB에는 스트림을 통해 비동기로 반영되므로 DB를 읽기 전에 reconcile로 밀린 이벤트를 모두 반영한다.
+     */
+
+
+    @Test
+    public void 동시에_100건의_장바구니_일괄_차감() throws InterruptedException {
+        int itemCount = 10;
+        int orderCount = 100;
+        Map<Long, Long> cart = new HashMap<>();
+        for (int i = 0; i < itemCount; i++) {
+            cart.put(stockRepository.saveAndFlush(new Stock(7L, (long) orderCount)).getId(), 1L);
+        }
+
+        runConcurrently(orderCount, () -> pessimisticLockStockService.decreaseAll(cart));
+
+        cart.keySet().forEach(id -> assertEquals(0, stockRepository.findById(id).orElseThrow().getQuantity()));
+    }
+
+    @Test
+    public void 장바구니_일괄_차감_하나라도_부족하면_전부_롤백() {
+        Long other = stockRepository.saveAndFlush(new Stock(9L, 1L)).getId();
+
+        assertThrows(RuntimeException.class, () -> pessimisticLockStockService.decreaseAll(Map.of(1L, 1L, other, 2L)));
+
+        assertEquals(100, stockRepository.findById(1L).orElseThrow().getQuantity());
+        assertEquals(1, stockRepository.findById(other).orElseThrow().getQuantity());
+    }
+    /**
+     * 품목별로 차감하면 주문 한 건에 트랜잭션과 락 획득이 품목 수만큼 필요하고, 중간에 실패하면 앞의 차감이 남는다.
+     * 일괄 차감은 IN 절 한 번으로 id 순서대로 락을 잡으므로 데드락 없이 한 트랜잭션으로 처리된다.
+     * 두 방식의 처리량 비교는 CartDecreaseBenchmark로 측정한다.
+     */
+
+    @Test
+    public void redisson_멀티락_일괄_차감은_펜싱_토큰으로_기록하고_부족하면_전부_롤백() {
+        Long other = stockRepository.saveAndFlush(new Stock(9L, 1L)).getId();
+
+        redissonLockStockFacade.decreaseAll(Map.of(1L, 1L, other, 1L));
+        Stock stock = stockRepository.findById(1L).orElseThrow();
+        assertEquals(99, stock.getQuantity());
+        assertNotNull(stock.getFencingToken());
+        assertNotNull(stockRepository.findById(other).orElseThrow().getFencingToken());
+
+        assertThrows(OutOfStockException.class, () -> redissonLockStockFacade.decreaseAll(Map.of(1L, 1L, other, 1L)));
+        assertEquals(99, stockRepository.findById(1L).orElseThrow().getQuantity());
+    }
+    /**
+     * 단건 차감과 같이 재고마다 펜싱 토큰을 받아서 조건부 UPDATE로 차감하므로 임대가 만료된 보유자의 늦은 쓰기는 DB가 거부한다.
+     * 락은 아직 보유 중인 것만 풀기 때문에 해제 실패가 차감 결과(재고 부족)를 가리지 않는다.
+     */
+
+
+    @Test
+    public void lettuce_락_재시도는_retries로_기록() throws Exception {
+        Counter retries = meterRegistry.find("stock.lock.retries").tag("strategy", "lettuce").counter();
+        double before = retries == null ? 0 : retries.count();
+        Stock stock = stockRepository.saveAndFlush(new Stock(12L, 10L));
+
+        // 다른 보유자가 락을 잡고 있는 동안 차감 요청은 재시도하며 기다린다.
+        String token = redisLockRepository.lock(stock.getId());
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+            try {
+                lettuceLockStockFacade.decrease(stock.getId(), 1L);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        redisLockRepository.unlock(stock.getId(), token);
+        waiting.get(5, TimeUnit.SECONDS);
+
+        assertTrue(meterRegistry.find("stock.lock.retries").tag("strategy", "lettuce").counter().count() > before);
+        assertEquals(9, stockRepository.findById(stock.getId()).orElseThrow().getQuantity());
+    }
+    /**
+     * 재시도는 RedisLockRepository 안의 대기 루프에서 일어나므로 재시도 직전마다 콜백으로 stock.lock.retries를 올린다.
+     * 계측 자체의 비용은 LockMetricsBenchmark에서 측정한다.
+     */
+
+    @Test
+    public void 낙관적_락_시도_횟수와_충돌은_metrics와_endpoint로_노출() throws InterruptedException {
+        double before = optimisticAttempts();
+        Stock stock = stockRepository.saveAndFlush(new Stock(13L, 100L));
+
+        runConcurrently(100, () -> {
+            try {
+                optimisticLockStockFacade.decrease(stock.getId(), 1L);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        assertEquals(0, stockRepository.findById(stock.getId()).orElseThrow().getQuantity());
+        assertEquals(100, optimisticAttempts() - before);
+
+        ConflictStatistics.IdConflicts conflicts = conflictStatistics.topConflicts(Integer.MAX_VALUE).stream()
+                .filter(idConflicts -> idConflicts.id().equals(stock.getId()))
+                .findFirst().orElseThrow();
+        assertEquals(conflictStatistics.getConflictCount(stock.getId()), conflicts.conflicts());
+        assertTrue(lockContentionEndpoint.hotKeys(10).containsKey("conflicts"));
+    }
+    /**
+     * 성공까지 걸린 시도 횟수는 stock.optimistic.attempts로 요청마다 한 번씩 기록된다.
+     * 재고 id 별 충돌 수와 충돌률은 태그로 내보내지 않고 /actuator/lockcontention의 conflicts에서 상위 N개만 본다.
+     */
+
+    private double optimisticAttempts() {
+        return meterRegistry.find("stock.optimistic.attempts").functionCounters().stream()
+                .mapToDouble(FunctionCounter::count)
+                .sum();
+    }
+
+
+    @Test
+    public void named_lock_동시에_1000개의_요청_커넥션_사용량() throws InterruptedException {
+        int requestCount = 1000;
+        Stock stock = stockRepository.saveAndFlush(new Stock(10L, (long) requestCount));
+        HikariPoolMXBean businessPool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+        AtomicInteger peakBusinessWaiting = new AtomicInteger();
+        AtomicInteger peakLock = new AtomicInteger();
+
+        // 비즈니스 풀은 스케줄 작업(write-behind flush, ledger compaction 등)도 같이 쓰므로 사용 중인 수 대신 대기 스레드 수를 본다.
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> {
+            peakBusinessWaiting.accumulateAndGet(businessPool.getThreadsAwaitingConnection(), Math::max);
+            peakLock.accumulateAndGet(namedLockExecutor.getActiveConnections(), Math::max);
+        }, 0, 1, TimeUnit.MILLISECONDS);
+
+        ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+        CountDownLatch latch = new CountDownLatch(requestCount);
+        for (int i = 0; i < requestCount; i++) {
+            executorService.submit(() -> {
+                try {
+                    namedLockStockFacade.decrease(stock.getId(), 1L);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await();
+        sampler.shutdown();
+
+        assertEquals(0, stockRepository.findById(stock.getId()).orElseThrow().getQuantity());
+        assertEquals(0, peakBusinessWaiting.get());
+        assertTrue(peakLock.get() <= namedLockExecutor.getMaximumConnections());
+    }
+    /**
+     * 락을 잡은 요청 하나만 차감 트랜잭션을 실행하므로 1000개 요청이 몰려도 비즈니스 풀에서 커넥션을 기다리는 스레드가 없다.
+     * 락 대기는 락 풀 크기(stock.named-lock.pool-size)만큼만 동시에 MySQL에서 기다리고 나머지는 풀에서 기다린다.
+     */
+
+
+    @Test
+    public void 만료된_락_보유자의_쓰기는_거부된다() {
+        // 나중에 락을 얻은 쪽(토큰 2)이 먼저 쓰고
+        atomicUpdateStockService.decrease(1L, 1L, 2L);
+
+        // 임대가 만료된 이전 보유자(토큰 1)의 쓰기가 늦게 도착
+        assertThrows(ConcurrencyFailureException.class, () -> atomicUpdateStockService.decrease(1L, 1L, 1L));
+
+        Stock stock = stockRepository.findById(1L).orElseThrow();
+        assertEquals(99, stock.getQuantity());
+        assertEquals(2L, stock.getFencingToken());
+    }
+    /**
+     * tryLock(10, 1, SECONDS)처럼 임대를 짧게 고정하면 GC 멈춤이나 DB 지연 중에 임대가 만료되어 두 보유자가 동시에 쓸 수 있다.
+     * 펜싱 토큰은 락을 얻은 순서대로 커지므로 DB가 더 작은 토큰의 쓰기를 거부해서 재고가 오염되지 않는다.
+     */
+
+
+    @Test
+    public void 동시에_100개의_요청_hierarchical_lock() throws InterruptedException {
+        runConcurrently(100, () -> {
+            try {
+                hierarchicalLockStockFacade.decrease(1L, 1L);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        assertEquals(0, stockRepository.findById(1L).orElseThrow().getQuantity());
+        assertEquals(0, hierarchicalLockManager.getActiveKeys());
+    }
+    /**
+     * 32개의 스레드가 로컬 락에서 줄을 서고 분산 락은 최대 16번까지 이어서 사용하므로
+     * Redis 명령이 lettuce 방식(요청마다 SETNX + 해제)보다 훨씬 적다.
+     * 요청 당 명령 수는 StockDecreaseBenchmark(-PjmhStrategies=lettuce,hierarchical)가 측정이 끝날 때 출력한다.
+     */
+
+    @Test
+    public void 재고_조회_캐시는_커밋된_차감을_바로_반영() {
+        Stock stock = stockRepository.saveAndFlush(new Stock(2L, 100L));
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(100L, stockAvailabilityService.getAvailable(stock.getId()));
+        }
+
+        // 엔티티 변경은 커밋 후 새 값으로 갱신
+        pessimisticLockStockService.decrease(stock.getId(), 1L);
+        assertEquals(99L, stockAvailabilityService.getAvailable(stock.getId()));
+
+        // 벌크 UPDATE는 커밋 후 무효화되어 다시 읽음
+        atomicUpdateStockService.decrease(stock.getId(), 1L);
+        assertEquals(98L, stockAvailabilityService.getAvailable(stock.getId()));
+
+        assertTrue(stockAvailabilityService.getHitRate() > 0.9);
+    }
+    /**
+     * 조회는 캐시에서 답하지만, 엔티티 변경은 커밋 후 새 값으로 덮어쓰고 벌크 UPDATE는 커밋 후 지워서 다시 읽으므로
+     * 커밋된 차감이 조회에 늦게 보이지 않는다.
+     */
+
+    @Test
+    public void 동시에_100개의_예약_30퍼센트_결제_이탈() throws InterruptedException {
+        Stock stock = stockRepository.saveAndFlush(new Stock(3L, 100L));
+        AtomicInteger requests = new AtomicInteger();
+
+        runConcurrently(100, () -> {
+            Long reservationId = reservationStockService.reserve(stock.getId(), 1L, Duration.ofMillis(300));
+
+            // 10건 중 3건은 결제 도중 이탈해서 만료될 때까지 방치
+            if (requests.getAndIncrement() % 10 >= 3) {
+                reservationStockService.confirm(reservationId);
+            }
+        });
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (reservationStockService.getPendingExpiries() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        Stock result = stockRepository.findById(stock.getId()).orElseThrow();
+        assertEquals(30L, result.getQuantity());
+        assertEquals(0L, result.getReserved());
+    }
+    /**
+     * 확정된 70건은 reserve + confirm으로 행을 두 번 쓰고, 이탈한 30건은 만료 스레드가 한 번에 하나씩 돌려놓는다.
+     * 차감 후 보상(increase) 방식과 달리 이탈한 주문도 결제 요청 스레드에서 추가로 행 락을 잡지 않는다.
+     * 두 방식의 처리량 비교는 ./gradlew jmh -PjmhIncludes=CheckoutBenchmark
+     */
+
+    @Test
+    public void 같은_요청id로_재시도한_요청은_한번만_차감() throws InterruptedException {
+        Stock stock = stockRepository.saveAndFlush(new Stock(5L, 100L));
+        String prefix = UUID.randomUUID().toString();
+        AtomicInteger requests = new AtomicInteger();
+
+        // 요청 10개를 각각 10번씩 동시에 재시도
+        runConcurrently(100, () -> idempotentStockService.decrease(stock.getId(), 1L, prefix + "-" + requests.getAndIncrement() % 10));
+
+        assertEquals(90L, stockRepository.findById(stock.getId()).orElseThrow().getQuantity());
+    }
+    /**
+     * 같은 요청 id의 재시도는 차감 기록 INSERT가 기본 키 충돌로 실패해서 트랜잭션째 롤백되므로
+     * 동시에 여러 번 들어와도 요청 id 하나 당 한 번만 차감된다.
+     */
+
+    @Test
+    public void 동시에_10000개의_요청_ledger() throws InterruptedException {
+        Stock ledger = stockRepository.saveAndFlush(new Stock(7L, 10_000L));
+
+        runConcurrently(10_000, () -> ledgerStockService.decrease(ledger.getId(), 1L));
+
+        assertEquals(0L, ledgerStockService.getAvailable(ledger.getId()));
+        ledgerStockService.compact();
+        assertEquals(0L, ledgerStockService.getAvailable(ledger.getId()));
+
+        assertEquals(0L, stockRepository.findById(ledger.getId()).orElseThrow().getQuantity());
+        assertThrows(RuntimeException.class, () -> ledgerStockService.decrease(ledger.getId(), 1L));
+    }
+    /**
+     * ledger는 재고 행을 수정하지 않고 변동을 INSERT만 하므로 한 행의 락을 기다리지 않는다.
+     * 남은 재고는 스냅샷과 아직 합치지 않은 변동의 합이라 compact 전후 모두 같은 값이고, 합친 뒤에는 재고 행에도 반영된다.
+     * 비관적 락과의 처리량 비교는 StockDecreaseBenchmark(-PjmhStrategies=pessimistic,ledger)로 측정한다.
+     */
+
+    @Test
+    public void 재고의_10배_요청_admission_control() throws InterruptedException {
+        Stock stock = stockRepository.saveAndFlush(new Stock(8L, 1_000L));
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger outOfStock = new AtomicInteger();
+
+        runConcurrently(10_000, () -> {
+            try {
+                admissionControlStockFacade.decrease(stock.getId(), 1L);
+                succeeded.incrementAndGet();
+            } catch (StockRequestRejectedException e) {
+                rejected.incrementAndGet();
+            } catch (OutOfStockException e) {
+                outOfStock.incrementAndGet();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+
+        assertEquals(1_000L - succeeded.get(), stockRepository.findById(stock.getId()).orElseThrow().getQuantity());
+        assertEquals(10_000, succeeded.get() + rejected.get() + outOfStock.get());
+    }
+    /**
+     * 한도를 넘은 요청은 락을 기다리지 않고 바로 거절되고, 재고가 떨어진 뒤의 요청은 DB에 가지 않으므로 꼬리 지연이 짧다.
+     * 지연 시간 분포는 StockDecreaseBenchmark(-PjmhStrategies=adaptive,admission -PjmhModes=sample)로 측정한다.
+     */
+
+    @Test
+    public void 품절된_재고는_DB_조회_없이_거절() {
+        Stock stock = stockRepository.saveAndFlush(new Stock(9L, 1L));
+        pessimisticLockStockService.decrease(stock.getId(), 1L);
+        assertTrue(soldOutRegistry.isSoldOut(stock.getId()));
+
+        // 미리 만들어 둔 예외를 그대로 던진다.
+        OutOfStockException e = assertThrows(OutOfStockException.class, () -> pessimisticLockStockService.decrease(stock.getId(), 1L));
+        assertSame(OutOfStockException.SOLD_OUT, e);
+
+        // 재입고하면 다시 차감할 수 있다.
+        Stock restocked = stockRepository.findById(stock.getId()).orElseThrow();
+        restocked.increase(1L);
+        stockRepository.saveAndFlush(restocked);
+        assertFalse(soldOutRegistry.isSoldOut(stock.getId()));
+        pessimisticLockStockService.decrease(stock.getId(), 1L);
+    }
+
+    @Test
+    public void 품절_기록_직전에_재입고되면_품절로_남지_않음() {
+        // 재고 0을 읽은 뒤 품절을 기록하기 전에 재입고가 커밋된 상황
+        Stock stock = stockRepository.saveAndFlush(new Stock(10L, 0L));
+        atomicUpdateStockService.increase(stock.getId(), 5L);
+
+        soldOutRegistry.markSoldOut(stock.getId());
+
+        assertFalse(soldOutRegistry.isSoldOut(stock.getId()));
+        atomicUpdateStockService.decrease(stock.getId(), 1L);
+    }
+    /**
+     * 품절 기록 후 DB를 다시 읽어서 재고가 있으면 되돌리므로, 재입고의 clear가 먼저 실행됐더라도 품절로 남지 않는다.
+     */
+
+    @Test
+    public void 음수_수량은_재입고와_차감_모두_거부() {
+        Stock stock = stockRepository.saveAndFlush(new Stock(11L, 100L));
+
+        assertThrows(IllegalArgumentException.class, () -> atomicUpdateStockService.increase(stock.getId(), -500L));
+        assertThrows(IllegalArgumentException.class, () -> atomicUpdateStockService.decreaseAll(Map.of(stock.getId(), -1L)));
+        assertThrows(IllegalArgumentException.class, () -> atomicUpdateStockService.decrease(stock.getId(), -1L));
+        assertThrows(IllegalArgumentException.class, () -> atomicUpdateStockService.decrease(stock.getId(), -1L, Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> idempotentStockService.decrease(stock.getId(), -1L, UUID.randomUUID().toString()));
+        assertThrows(IllegalArgumentException.class, () -> pessimisticLockStockService.decrease(stock.getId(), -1L));
+        assertThrows(IllegalArgumentException.class, () -> pessimisticLockStockService.decreaseAll(Map.of(stock.getId(), -1L)));
+        assertThrows(IllegalArgumentException.class, () -> coalescingStockFacade.decrease(stock.getId(), -1L));
+        assertEquals(100L, stockRepository.findById(stock.getId()).orElseThrow().getQuantity());
+    }
+    /**
+     * 조건부 UPDATE는 "재고 >= 수량"만 검사하므로 음수 차감은 증가가 된다. 음수 재입고는 재고를 음수로 만들 수 있다.
+     * 그래서 차감과 재입고의 모든 진입점에서 먼저 거부하고, 재입고는 리포지토리 조건으로 한 번 더 막는다.
+     */
+
+    @Test
+    public void 재고_일괄_등록() {
+        long before = stockRepository.count();
+
+        int imported = stockImportService.importAll(LongStream.range(0, 2_500).mapToObj(i -> new Stock(i, 100L)));
+
+        assertEquals(2_500, imported);
+        assertEquals(before + 2_500, stockRepository.count());
+    }
+    /**
+     * 청크(기본 1000개) 경계를 넘는 수로 등록해서 마지막 청크까지 저장되는지만 확인한다.
+     * 10만 개 등록 시간과 배치 크기 별 비교는 StockImportBenchmark에서 측정한다.
+     */
 }
 
 /**
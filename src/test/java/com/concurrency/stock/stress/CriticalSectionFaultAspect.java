@@ -0,0 +1,73 @@
+package com.concurrency.stock.stress;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+/**
+ * FaultInjection에 걸어둔 장애를 차감 방식 안쪽에서 일으킨다.
+ *
+ * 락 타임아웃 - 비관적 락 조회는 MySQL 락 대기 타임아웃처럼 CannotAcquireLockException을 던지고, 펜싱 락은 획득 실패(null)를 돌려준다.
+ * 임대 만료 - 분산 락을 잡은 뒤 호출되는 서비스 메서드에 들어가는 순간 락을 강제로 풀고 잠시 멈춘다.
+ *            그동안 다른 스레드가 같은 락을 얻으므로, 임대가 만료된 이전 보유자가 늦게 쓰는 상황이 만들어진다.
+ * DB 장애 - 트랜잭션 매니저의 커밋에서 UPDATE를 보낸 뒤 롤백하고 예외를 던지거나, 커밋한 뒤 예외를 던진다.
+ *          호출한 쪽은 두 경우를 구분할 수 없다.
+ */
+@Aspect
+public class CriticalSectionFaultAspect {
+
+    @Around("execution(* com.concurrency.stock.repository.StockRepository.findByIdWithPessimisticLock(..)) " +
+            "|| execution(* com.concurrency.stock.repository.StockRepository.findAllByIdWithPessimisticLock(..))")
+    public Object lockWaitTimeout(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (FaultInjection.takeLockTimeout()) {
+            throw new CannotAcquireLockException("injected lock wait timeout");
+        }
+        return joinPoint.proceed();
+    }
+
+    @Around("execution(* com.concurrency.stock.lock.FencedLockProvider.tryLock(..))")
+    public Object fencedLockTimeout(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (FaultInjection.takeLockTimeout()) {
+            return null;
+        }
+        return joinPoint.proceed();
+    }
+
+    @Around("(execution(* com.concurrency.stock.service.AtomicUpdateStockService.decrease(Long, Long, Long)) " +
+            "|| execution(* com.concurrency.stock.service.StockService.decrease*(Long, Long))) && args(id, ..)")
+    public Object pause(ProceedingJoinPoint joinPoint, Long id) throws Throwable {
+        FaultInjection.LeaseExpiry leaseExpiry = FaultInjection.takeLeaseExpiry();
+        if (leaseExpiry != null) {
+            leaseExpiry.leaseBreaker().accept(id);
+            Thread.sleep(leaseExpiry.pauseMillis());
+        }
+        return joinPoint.proceed();
+    }
+
+    /**
+     * 바깥 트랜잭션에 참여만 하는 커밋은 실제로 커밋하지 않으므로 건너뛴다.
+     */
+    @Around("execution(void org.springframework.transaction.PlatformTransactionManager+.commit(..)) " +
+            "&& args(status) && target(transactionManager)")
+    public void commit(ProceedingJoinPoint joinPoint, TransactionStatus status,
+                       PlatformTransactionManager transactionManager) throws Throwable {
+        FaultInjection.DbFailure dbFailure = status.isNewTransaction() ? FaultInjection.takeDbFailure() : null;
+        if (dbFailure == null) {
+            joinPoint.proceed();
+            return;
+        }
+
+        if (dbFailure.afterCommit()) {
+            joinPoint.proceed();
+            throw new DataAccessResourceFailureException("injected failure after commit");
+        }
+
+        status.flush();
+        transactionManager.rollback(status);
+        throw new DataAccessResourceFailureException("injected failure before commit");
+    }
+}
@@ -0,0 +1,60 @@
+package com.concurrency.stock.stress;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 장애를 현재 스레드의 다음 락 획득/임계 구역 진입/커밋에 걸어둔다. CriticalSectionFaultAspect가 꺼내서 실행한다.
+ */
+public final class FaultInjection {
+    private static final ThreadLocal<LeaseExpiry> LEASE_EXPIRY = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> LOCK_TIMEOUT = new ThreadLocal<>();
+    private static final ThreadLocal<DbFailure> DB_FAILURE = new ThreadLocal<>();
+
+    private FaultInjection() {
+    }
+
+    public static void armLeaseExpiry(LongConsumer leaseBreaker, long pauseMillis) {
+        LEASE_EXPIRY.set(new LeaseExpiry(leaseBreaker, pauseMillis));
+    }
+
+    public static void armLockTimeout() {
+        LOCK_TIMEOUT.set(Boolean.TRUE);
+    }
+
+    /**
+     * @param afterCommit true면 커밋한 뒤에, false면 UPDATE를 보낸 뒤 롤백하고 예외를 던진다.
+     */
+    public static void armDbFailure(boolean afterCommit) {
+        DB_FAILURE.set(new DbFailure(afterCommit));
+    }
+
+    public static LeaseExpiry takeLeaseExpiry() {
+        LeaseExpiry leaseExpiry = LEASE_EXPIRY.get();
+        LEASE_EXPIRY.remove();
+        return leaseExpiry;
+    }
+
+    public static boolean takeLockTimeout() {
+        boolean armed = LOCK_TIMEOUT.get() != null;
+        LOCK_TIMEOUT.remove();
+        return armed;
+    }
+
+    public static DbFailure takeDbFailure() {
+        DbFailure dbFailure = DB_FAILURE.get();
+        DB_FAILURE.remove();
+        return dbFailure;
+    }
+
+    public static void disarm() {
+        LEASE_EXPIRY.remove();
+        LOCK_TIMEOUT.remove();
+        DB_FAILURE.remove();
+    }
+
+    public record LeaseExpiry(LongConsumer leaseBreaker, long pauseMillis) {
+    }
+
+    public record DbFailure(boolean afterCommit) {
+    }
+}
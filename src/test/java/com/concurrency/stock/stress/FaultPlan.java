@@ -0,0 +1,28 @@
+package com.concurrency.stock.stress;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 요청마다 주입할 장애와 확률.
+ *
+ * lockTimeoutRate - 차감 방식 안의 락 획득(비관적 락 조회, 펜싱 락)을 타임아웃시킨다. (반영되지 않은 실패)
+ * dbFailureRate - UPDATE 뒤 커밋 전이나 커밋 후에 DB 예외를 던진다. 둘 중 어느 쪽인지는 반반이다. (반영 여부를 모르는 실패)
+ * leaseExpiryRate - 락을 잡은 뒤 leaseBreaker로 락을 강제로 풀고 pauseMillis만큼 멈춘다. (GC 멈춤 중 임대 만료)
+ */
+@Getter
+@Builder
+public class FaultPlan {
+    private final double lockTimeoutRate;
+    private final double dbFailureRate;
+    private final double leaseExpiryRate;
+    @Builder.Default
+    private final long pauseMillis = 50;
+    private final LongConsumer leaseBreaker;
+
+    public static FaultPlan none() {
+        return FaultPlan.builder().build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.concurrency.stock.stress;
+
+import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.facade.HierarchicalLockStockFacade;
+import com.concurrency.stock.facade.LettuceLockStockFacade;
+import com.concurrency.stock.facade.NamedLockStockFacade;
+import com.concurrency.stock.facade.RedissonLockStockFacade;
+import com.concurrency.stock.repository.StockRepository;
+import com.concurrency.stock.service.StockDecreaseStrategy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 인스턴스 수를 1, 2, 4, 8개로 늘리면서 분산 락 방식별 처리량과 락 인계 시간을 비교한다.
+ * 노드 당 클라이언트 스레드 수를 고정하므로 노드가 늘면 같은 락을 다투는 JVM도 늘어난다.
+ *
+ * 락 인계 시간은 한 재고에 요청이 몰린 상황에서 (전체 시간 - 락 보유 시간의 합) / 요청 수로 계산한다.
+ * 락이 직렬화되어 있으므로 보유 시간이 아닌 나머지는 모두 다음 보유자에게 락이 넘어가는 데 쓴 시간이다.
+ *
+ * 컨텍스트 8개를 띄우므로 기본 test 태스크에서는 빠지고 ./gradlew performanceTest로 실행한다.
+ */
+@Tag("performance")
+public class MultiNodeStressTest {
+    private static final int MAX_NODES = 8;
+    private static final int THREADS_PER_NODE = 8;
+    private static final int OPERATIONS = 1_000;
+
+    private static SimulatedCluster cluster;
+
+    private final StressHarness harness = new StressHarness();
+
+    @BeforeAll
+    public static void startCluster() {
+        cluster = new SimulatedCluster(MAX_NODES);
+    }
+
+    @AfterAll
+    public static void stopCluster() {
+        cluster.close();
+    }
+
+    @Test
+    public void 노드_수에_따른_분산_락_확장성() throws InterruptedException {
+        Map<String, Class<? extends StockDecreaseStrategy>> strategies = new LinkedHashMap<>();
+        strategies.put("named", NamedLockStockFacade.class);
+        strategies.put("lettuce", LettuceLockStockFacade.class);
+        strategies.put("redisson", RedissonLockStockFacade.class);
+        strategies.put("hierarchical", HierarchicalLockStockFacade.class);
+
+        StockRepository stockRepository = cluster.bean(0, StockRepository.class);
+
+        for (Map.Entry<String, Class<? extends StockDecreaseStrategy>> entry : strategies.entrySet()) {
+            for (int nodes = 1; nodes <= MAX_NODES; nodes *= 2) {
+                Long id = stockRepository.saveAndFlush(new Stock(1L, (long) OPERATIONS)).getId();
+
+                StressScenario scenario = StressScenario.builder()
+                        .productIds(List.of(id))
+                        .threads(THREADS_PER_NODE * nodes)
+                        .operations(OPERATIONS)
+                        .selector(random -> 0)
+                        .build();
+
+                long holdBefore = cluster.totalHoldNanos(entry.getKey(), nodes);
+                StressReport report = harness.run(entry.getKey() + " x" + nodes, scenario,
+                        cluster.spread(entry.getValue(), nodes),
+                        productId -> stockRepository.findById(productId).orElseThrow().getQuantity());
+                long hold = cluster.totalHoldNanos(entry.getKey(), nodes) - holdBefore;
+
+                System.out.println(report);
+                System.out.printf("%s x%d: 락 인계 평균 %.3fms%n", entry.getKey(), nodes,
+                        (report.getElapsedNanos() - hold) / 1_000_000.0 / report.getCompleted());
+                assertTrue(report.isLinearizable(), report.getViolations().toString());
+
+                stockRepository.deleteAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.concurrency.stock.stress;
+
+/**
+ * 기록된 차감 요청 하나. 호출 시각과 완료 시각 사이의 어느 한 순간에 원자적으로 반영됐다고 볼 수 있어야 한다.
+ */
+public record Operation(long productId, long quantity, long invokeNanos, long completeNanos, Outcome outcome) {
+
+    public long latencyNanos() {
+        return completeNanos - invokeNanos;
+    }
+
+    public enum Outcome {
+        /** 차감됨 */
+        OK,
+        /** 재고 부족으로 차감되지 않음 */
+        OUT_OF_STOCK,
+        /** 차감되지 않았음이 확실한 실패 (락 타임아웃, 롤백) */
+        FAILED,
+        /** 반영 여부를 알 수 없는 실패 (커밋 응답 유실 등) */
+        UNKNOWN
+    }
+}
@@ -0,0 +1,36 @@
+package com.concurrency.stock.stress;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 요청이 어느 상품으로 가는지 정한다. 같은 시드면 같은 순서로 상품을 고른다.
+ */
+public interface ProductSelector {
+    /**
+     * @return 상품 목록의 인덱스
+     */
+    int select(SplittableRandom random);
+
+    static ProductSelector uniform(int products) {
+        return random -> random.nextInt(products);
+    }
+
+    /**
+     * 앞쪽 상품일수록 요청이 몰린다. exponent가 클수록 더 치우친다.
+     */
+    static ProductSelector zipf(int products, double exponent) {
+        double[] cdf = new double[products];
+        double total = 0;
+        for (int i = 0; i < products; i++) {
+            total += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = total;
+        }
+
+        double bound = total;
+        return random -> {
+            int index = Arrays.binarySearch(cdf, random.nextDouble(bound));
+            return Math.min(index < 0 ? -index - 1 : index, products - 1);
+        };
+    }
+}
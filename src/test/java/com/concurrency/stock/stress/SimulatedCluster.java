@@ -0,0 +1,97 @@
+package com.concurrency.stock.stress;
+
+import com.concurrency.stock.StockApplication;
+import com.concurrency.stock.service.StockDecreaseStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 한 JVM 안에 서로 독립된 애플리케이션 컨텍스트 N개를 띄워서 여러 인스턴스를 흉내낸다.
+ *
+ * 컨텍스트마다 커넥션 풀, Redis/Redisson 클라이언트, 로컬 락, 캐시가 따로 있으므로
+ * 같은 MySQL/Redis를 공유하는 인스턴스 N개와 같은 조건에서 분산 락을 검증할 수 있다.
+ * 첫 번째 노드만 스키마를 만들고, 나머지 노드는 ddl-auto=none으로 뜬다. 모든 노드가 웹 서버 없이 작은 커넥션 풀을 쓴다.
+ *
+ * Hikari의 minimumIdle 기본값은 최대 풀 크기라서 그대로 두면 노드마다 풀을 가득 채운다.
+ * 노드 당 최대 NODE_POOL_SIZE + NODE_LOCK_POOL_SIZE개이므로 8개 노드여도 96개로 MySQL 기본 max_connections(151) 안에 든다.
+ */
+public class SimulatedCluster implements AutoCloseable {
+    private static final int NODE_POOL_SIZE = 8;
+    private static final int NODE_LOCK_POOL_SIZE = 4;
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    public SimulatedCluster(int size) {
+        for (int i = 0; i < size; i++) {
+            nodes.add(start(i));
+        }
+    }
+
+    private static ConfigurableApplicationContext start(int index) {
+        // application.yml보다 우선하도록 커맨드라인 인자로 넘긴다. properties(...)는 기본값이라 yml에 덮인다.
+        return new SpringApplicationBuilder(StockApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.main.banner-mode=off",
+                        "--spring.jpa.hibernate.ddl-auto=" + (index == 0 ? "create" : "none"),
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+                        "--spring.datasource.hikari.maximum-pool-size=" + NODE_POOL_SIZE,
+                        "--spring.datasource.hikari.minimum-idle=2",
+                        "--spring.datasource.hikari.pool-name=node-" + index,
+                        "--stock.named-lock.pool-size=" + NODE_LOCK_POOL_SIZE,
+                        "--stock.named-lock.minimum-idle=1",
+                        "--stock.write-behind.journal-path=stock-journal-node-" + index + ".log",
+                        "--stock.redis-counter.consumer=node-" + index);
+    }
+
+    public <T> T bean(int node, Class<T> type) {
+        return nodes.get(node).getBean(type);
+    }
+
+    /**
+     * 앞에서부터 nodeCount개의 노드에 요청을 나눠 보내는 차감 방식.
+     * 클라이언트 스레드는 처음 배정된 노드에만 요청한다. (로드 밸런서의 고정 연결)
+     */
+    public StockDecreaseStrategy spread(Class<? extends StockDecreaseStrategy> type, int nodeCount) {
+        List<StockDecreaseStrategy> targets = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            targets.add(bean(i, type));
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        ThreadLocal<StockDecreaseStrategy> assigned = ThreadLocal.withInitial(() -> targets.get(next.getAndIncrement() % targets.size()));
+        return (id, quantity) -> assigned.get().decrease(id, quantity);
+    }
+
+    /**
+     * 노드 전체에서 해당 전략이 락을 보유한 시간의 합 (ns)
+     */
+    public long totalHoldNanos(String strategy, int nodeCount) {
+        long total = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            Timer hold = bean(i, MeterRegistry.class).find("stock.lock.hold").tag("strategy", strategy).timer();
+            if (hold != null) {
+                total += (long) hold.totalTime(TimeUnit.NANOSECONDS);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        // 스키마를 만든 첫 번째 노드를 마지막에 닫는다.
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            nodes.get(i).close();
+        }
+    }
+}
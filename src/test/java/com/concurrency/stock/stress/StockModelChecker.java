@@ -0,0 +1,130 @@
+package com.concurrency.stock.stress;
+
+import com.concurrency.stock.stress.Operation.Outcome;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 기록된 요청 이력이 "재고가 충분하면 차감하고, 아니면 실패하는 카운터"를 순서대로 실행한 결과로 설명되는지 검사한다.
+ *
+ * 일반적인 선형화 가능성 검사는 가능한 순서를 모두 탐색해야 하지만, 차감만 있는 카운터는 실시간 순서로 범위를 계산할 수 있다.
+ * - 최종 재고: 초기 재고 - 최종 재고는 OK 합 이상, OK + UNKNOWN 합 이하여야 한다. (lost update / 초과 차감)
+ * - OK: 호출 전에 확실히 끝난 OK만 빼도 재고가 부족했다면 어떤 순서로도 성공할 수 없다. (oversell)
+ * - OUT_OF_STOCK: 완료 전에 시작된 OK/UNKNOWN을 모두 빼도 재고가 남았다면 부족할 수 없다. (잘못된 품절)
+ * 위반이 보고되면 반드시 선형화할 수 없는 이력이다. 반대로 통과했다고 모든 순서 제약이 맞다는 보장은 아니다.
+ */
+public class StockModelChecker {
+
+    public List<String> check(List<Operation> history, Map<Long, Long> initial, Map<Long, Long> actual) {
+        List<String> violations = new ArrayList<>();
+        Map<Long, List<Operation>> byProduct = history.stream().collect(Collectors.groupingBy(Operation::productId));
+
+        for (Map.Entry<Long, Long> entry : initial.entrySet()) {
+            Long productId = entry.getKey();
+            List<Operation> operations = byProduct.getOrDefault(productId, List.of());
+            checkProduct(productId, operations, entry.getValue(), actual.get(productId), violations);
+        }
+        return violations;
+    }
+
+    private void checkProduct(Long productId, List<Operation> operations, long initial, long actual, List<String> violations) {
+        long acknowledged = sum(operations, Outcome.OK);
+        long unknown = sum(operations, Outcome.UNKNOWN);
+        long consumed = initial - actual;
+
+        if (actual < 0) {
+            violations.add("product " + productId + ": 재고가 음수 (" + actual + ")");
+        }
+        if (consumed < acknowledged) {
+            violations.add("product " + productId + ": lost update - 성공 " + acknowledged + "개, 실제 차감 " + consumed + "개");
+        }
+        if (consumed > acknowledged + unknown) {
+            violations.add("product " + productId + ": 초과 차감 - 최대 " + (acknowledged + unknown) + "개, 실제 차감 " + consumed + "개");
+        }
+
+        checkSucceeded(productId, operations, initial, violations);
+        checkOutOfStock(productId, operations, initial, violations);
+    }
+
+    /**
+     * OK 요청은 그 시점 재고가 요청 수량 이상이어야 한다.
+     * 호출 전에 끝난 OK는 반드시 먼저 반영됐으므로, 그것만 빼도 재고가 모자라면 위반이다.
+     */
+    private void checkSucceeded(Long productId, List<Operation> operations, long initial, List<String> violations) {
+        Operation[] done = operations.stream()
+                .filter(operation -> operation.outcome() == Outcome.OK)
+                .sorted(Comparator.comparingLong(Operation::completeNanos))
+                .toArray(Operation[]::new);
+        long[] completes = Arrays.stream(done).mapToLong(Operation::completeNanos).toArray();
+        long[] prefix = prefixSums(done);
+
+        for (Operation operation : done) {
+            int before = lowerBound(completes, operation.invokeNanos());
+            long maxRemaining = initial - prefix[before];
+            if (maxRemaining < operation.quantity()) {
+                violations.add("product " + productId + ": oversell - 남은 재고 최대 " + maxRemaining + "개에서 " + operation.quantity() + "개 차감 성공");
+                return;
+            }
+        }
+    }
+
+    /**
+     * OUT_OF_STOCK 요청은 그 시점 재고가 요청 수량보다 적어야 한다.
+     * 완료 전에 시작된 OK/UNKNOWN이 모두 먼저 반영됐다고 해도 재고가 충분하면 위반이다.
+     */
+    private void checkOutOfStock(Long productId, List<Operation> operations, long initial, List<String> violations) {
+        Operation[] applied = operations.stream()
+                .filter(operation -> operation.outcome() == Outcome.OK || operation.outcome() == Outcome.UNKNOWN)
+                .sorted(Comparator.comparingLong(Operation::invokeNanos))
+                .toArray(Operation[]::new);
+        long[] invokes = Arrays.stream(applied).mapToLong(Operation::invokeNanos).toArray();
+        long[] prefix = prefixSums(applied);
+
+        for (Operation operation : operations) {
+            if (operation.outcome() != Outcome.OUT_OF_STOCK) {
+                continue;
+            }
+
+            int before = lowerBound(invokes, operation.completeNanos());
+            long minRemaining = initial - prefix[before];
+            if (minRemaining >= operation.quantity()) {
+                violations.add("product " + productId + ": 잘못된 품절 - 남은 재고 최소 " + minRemaining + "개에서 " + operation.quantity() + "개 차감 실패");
+                return;
+            }
+        }
+    }
+
+    private static long sum(List<Operation> operations, Outcome outcome) {
+        return operations.stream().filter(operation -> operation.outcome() == outcome).mapToLong(Operation::quantity).sum();
+    }
+
+    private static long[] prefixSums(Operation[] operations) {
+        long[] prefix = new long[operations.length + 1];
+        for (int i = 0; i < operations.length; i++) {
+            prefix[i + 1] = prefix[i] + operations[i].quantity();
+        }
+        return prefix;
+    }
+
+    /**
+     * value보다 작은 원소의 개수
+     */
+    private static int lowerBound(long[] sorted, long value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,142 @@
+package com.concurrency.stock.stress;
+
+import com.concurrency.stock.domain.Stock;
+import com.concurrency.stock.facade.AdaptiveStockDecreaseRouter;
+import com.concurrency.stock.facade.OptimisticLockStockFacade;
+import com.concurrency.stock.facade.RedissonLockStockFacade;
+import com.concurrency.stock.repository.StockRepository;
+import com.concurrency.stock.service.PessimisticLockStockService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class StockStressTest {
+
+    @TestConfiguration
+    static class FaultConfig {
+        @Bean
+        public CriticalSectionFaultAspect criticalSectionFaultAspect() {
+            return new CriticalSectionFaultAspect();
+        }
+    }
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private PessimisticLockStockService pessimisticLockStockService;
+
+    @Autowired
+    private OptimisticLockStockFacade optimisticLockStockFacade;
+
+    @Autowired
+    private RedissonLockStockFacade redissonLockStockFacade;
+
+    @Autowired
+    private AdaptiveStockDecreaseRouter adaptiveStockDecreaseRouter;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    private final StressHarness harness = new StressHarness();
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        // 인기 상품은 중간에 품절되도록 전체 요청 수보다 적게 둔다.
+        for (int i = 0; i < 10; i++) {
+            productIds.add(stockRepository.saveAndFlush(new Stock((long) i, 300L)).getId());
+        }
+    }
+
+    @AfterEach
+    public void after() {
+        stockRepository.deleteAll();
+    }
+
+    @Test
+    public void pessimistic_락_타임아웃과_커밋_응답_유실() throws InterruptedException {
+        StressScenario scenario = StressScenario.builder()
+                .productIds(productIds)
+                .operations(5_000)
+                .selector(ProductSelector.zipf(productIds.size(), 1.2))
+                .faults(FaultPlan.builder().lockTimeoutRate(0.05).dbFailureRate(0.05).build())
+                .build();
+
+        assertLinearizable(harness.run("pessimistic", scenario, pessimisticLockStockService, this::quantity));
+    }
+    /**
+     * 락 대기 타임아웃은 UPDATE 전에 트랜잭션이 롤백되므로 반영되지 않은 실패(FAILED)로 기록된다.
+     * 커밋 전후에 주입된 DB 장애는 반영 여부를 모르는 요청(UNKNOWN)이 되고, 검사기는 두 경우를 모두 허용한다.
+     */
+
+    @Test
+    public void optimistic_균등_분포() throws InterruptedException {
+        StressScenario scenario = StressScenario.builder()
+                .productIds(productIds)
+                .operations(2_000)
+                .selector(ProductSelector.uniform(productIds.size()))
+                .build();
+
+        assertLinearizable(harness.run("optimistic", scenario, optimisticLockStockFacade, this::quantity));
+    }
+    /**
+     * 장애 없이 충돌과 재시도만 있는 기준 시나리오. 재시도를 포기한 요청은 버전 검사에서 롤백됐으므로 반영되지 않는다.
+     */
+
+    @Test
+    public void adaptive_router_zipf_분포() throws InterruptedException {
+        StressScenario scenario = StressScenario.builder()
+                .productIds(productIds)
+                .operations(5_000)
+                .selector(ProductSelector.zipf(productIds.size(), 1.2))
+                .faults(FaultPlan.builder().dbFailureRate(0.05).build())
+                .build();
+
+        assertLinearizable(harness.run("adaptive", scenario, adaptiveStockDecreaseRouter, this::quantity));
+    }
+    /**
+     * 인기 상품은 coalescing, 나머지는 낙관적 락으로 처리되는 동안 방식이 바뀌어도 재고가 틀어지지 않는다.
+     * coalescing 배치의 커밋에 DB 장애가 주입되면 그 배치에 묶인 요청 모두 반영 여부를 모르는 요청이 된다.
+     */
+
+    @Test
+    public void redisson_임대_만료() throws InterruptedException {
+        StressScenario scenario = StressScenario.builder()
+                .productIds(productIds)
+                .operations(2_000)
+                .selector(ProductSelector.zipf(productIds.size(), 1.2))
+                .faults(FaultPlan.builder()
+                        .leaseExpiryRate(0.02)
+                        .pauseMillis(50)
+                        .leaseBreaker(id -> redissonClient.getLock(String.valueOf(id)).forceUnlock())
+                        .build())
+                .build();
+
+        assertLinearizable(harness.run("redisson", scenario, redissonLockStockFacade, this::quantity));
+    }
+    /**
+     * 락을 강제로 푼 동안 다른 스레드가 더 큰 펜싱 토큰으로 차감하므로, 멈췄던 스레드의 늦은 쓰기는 DB에서 거부된다. (FAILED)
+     * 거부된 요청은 반영되지 않았음이 확실하므로 이력은 여전히 선형화 가능하다.
+     */
+
+    private long quantity(long id) {
+        return stockRepository.findById(id).orElseThrow().getQuantity();
+    }
+
+    private void assertLinearizable(StressReport report) {
+        System.out.println(report);
+        assertTrue(report.isLinearizable(), report.getViolations().toString());
+    }
+}
@@ -0,0 +1,115 @@
+package com.concurrency.stock.stress;
+
+import com.concurrency.stock.admission.StockRequestRejectedException;
+import com.concurrency.stock.domain.OutOfStockException;
+import com.concurrency.stock.service.StockDecreaseStrategy;
+import com.concurrency.stock.stress.Operation.Outcome;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 차감 방식 하나에 시나리오대로 동시 요청을 보내고, 요청 이력을 StockModelChecker로 검사한다.
+ *
+ * 스레드마다 seed + 스레드 번호로 만든 난수를 쓰므로 같은 시드면 각 스레드가 보내는 상품과 주입되는 장애가 같다.
+ * (스레드 간 실행 순서는 스케줄러가 정하므로 이력 자체가 같지는 않다.)
+ */
+public class StressHarness {
+    private final StockModelChecker checker = new StockModelChecker();
+
+    /**
+     * @param quantityReader 상품 id로 현재 DB 재고를 읽는다.
+     */
+    public StressReport run(String name, StressScenario scenario, StockDecreaseStrategy strategy,
+                            LongUnaryOperator quantityReader) throws InterruptedException {
+        List<Long> productIds = scenario.getProductIds();
+        Map<Long, Long> initial = readQuantities(productIds, quantityReader);
+
+        Operation[] history = new Operation[scenario.getOperations()];
+        AtomicInteger tickets = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(scenario.getThreads());
+
+        long start = System.nanoTime();
+        for (int thread = 0; thread < scenario.getThreads(); thread++) {
+            SplittableRandom random = new SplittableRandom(scenario.getSeed() + thread);
+            executorService.submit(() -> {
+                for (int ticket = tickets.getAndIncrement(); ticket < history.length; ticket = tickets.getAndIncrement()) {
+                    Long productId = productIds.get(scenario.getSelector().select(random));
+                    history[ticket] = execute(strategy, productId, scenario.getQuantity(), scenario.getFaults(), random);
+                }
+            });
+        }
+
+        executorService.shutdown();
+        boolean finished = executorService.awaitTermination(scenario.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        long elapsed = System.nanoTime() - start;
+        if (!finished) {
+            executorService.shutdownNow();
+        }
+
+        List<Operation> completed = new ArrayList<>(Arrays.stream(history).filter(Objects::nonNull).toList());
+        List<String> violations = finished
+                ? checker.check(completed, initial, readQuantities(productIds, quantityReader))
+                : List.of(history.length - completed.size() + "개 요청이 " + scenario.getTimeout() + " 안에 끝나지 않음 (락 누수/교착 의심)");
+
+        return new StressReport(name, scenario.getSeed(), elapsed, completed, history.length - completed.size(),
+                scenario.getStallThreshold().toNanos(), violations);
+    }
+
+    private Operation execute(StockDecreaseStrategy strategy, Long productId, long quantity, FaultPlan faults, SplittableRandom random) {
+        boolean lockTimeout = random.nextDouble() < faults.getLockTimeoutRate();
+        boolean dbFailure = random.nextDouble() < faults.getDbFailureRate();
+        boolean afterCommit = random.nextBoolean();
+        boolean leaseExpiry = random.nextDouble() < faults.getLeaseExpiryRate();
+
+        long invoke = System.nanoTime();
+        Outcome outcome;
+        try {
+            if (lockTimeout) {
+                FaultInjection.armLockTimeout();
+            }
+            if (dbFailure) {
+                FaultInjection.armDbFailure(afterCommit);
+            }
+            if (leaseExpiry) {
+                FaultInjection.armLeaseExpiry(faults.getLeaseBreaker(), faults.getPauseMillis());
+            }
+
+            // 걸어둔 장애를 지나지 않는 방식(락이나 트랜잭션이 없는 경로)이면 장애 없이 끝난다.
+            strategy.decrease(productId, quantity);
+            outcome = Outcome.OK;
+        } catch (OutOfStockException e) {
+            outcome = Outcome.OUT_OF_STOCK;
+        } catch (StockRequestRejectedException | ConcurrencyFailureException e) {
+            // 락 타임아웃, 오래된 펜싱 토큰, 낙관적 락 충돌은 모두 롤백된 실패
+            outcome = Outcome.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = Outcome.UNKNOWN;
+        } catch (RuntimeException e) {
+            // 주입된 DB 장애는 커밋 전후를 호출한 쪽이 구분할 수 없다.
+            outcome = Outcome.UNKNOWN;
+        } finally {
+            FaultInjection.disarm();
+        }
+
+        return new Operation(productId, quantity, invoke, System.nanoTime(), outcome);
+    }
+
+    private static Map<Long, Long> readQuantities(List<Long> productIds, LongUnaryOperator quantityReader) {
+        Map<Long, Long> quantities = new LinkedHashMap<>();
+        productIds.forEach(id -> quantities.put(id, quantityReader.applyAsLong(id)));
+        return quantities;
+    }
+}
@@ -0,0 +1,65 @@
+package com.concurrency.stock.stress;
+
+import com.concurrency.stock.stress.Operation.Outcome;
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+public class StressReport {
+    private final String name;
+    private final long seed;
+    private final long elapsedNanos;
+    private final int completed;
+    private final int unfinished;
+    private final Map<Outcome, Integer> outcomes = new EnumMap<>(Outcome.class);
+    private final long[] sortedLatencies;
+    private final int stalls;
+    private final List<String> violations;
+
+    public StressReport(String name, long seed, long elapsedNanos, List<Operation> history, int unfinished,
+                        long stallThresholdNanos, List<String> violations) {
+        this.name = name;
+        this.seed = seed;
+        this.elapsedNanos = elapsedNanos;
+        this.completed = history.size();
+        this.unfinished = unfinished;
+        this.violations = violations;
+
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, 0);
+        }
+        history.forEach(operation -> outcomes.merge(operation.outcome(), 1, Integer::sum));
+
+        this.sortedLatencies = history.stream().mapToLong(Operation::latencyNanos).sorted().toArray();
+        this.stalls = (int) history.stream().filter(operation -> operation.latencyNanos() > stallThresholdNanos).count();
+    }
+
+    public double getThroughput() {
+        return completed * 1_000_000_000.0 / Math.max(elapsedNanos, 1);
+    }
+
+    /**
+     * @return 지연 시간 백분위 (ms)
+     */
+    public double percentile(double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))] / 1_000_000.0;
+    }
+
+    public boolean isLinearizable() {
+        return violations.isEmpty() && unfinished == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (seed=%d): %d ops, %.0f ops/s, p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms, %s, stall=%d, unfinished=%d, violations=%s",
+                name, seed, completed, getThroughput(), percentile(50), percentile(95), percentile(99), percentile(100),
+                outcomes, stalls, unfinished, violations);
+    }
+}
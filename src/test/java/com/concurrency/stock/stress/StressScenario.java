@@ -0,0 +1,31 @@
+package com.concurrency.stock.stress;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.List;
+
+@Getter
+@Builder
+public class StressScenario {
+    private final List<Long> productIds;
+    @Builder.Default
+    private final int threads = 32;
+    @Builder.Default
+    private final int operations = 10_000;
+    @Builder.Default
+    private final long quantity = 1L;
+    private final ProductSelector selector;
+    @Builder.Default
+    private final FaultPlan faults = FaultPlan.none();
+    @Builder.Default
+    private final long seed = 42L;
+    @Builder.Default
+    private final Duration timeout = Duration.ofMinutes(2);
+    /**
+     * 이보다 오래 걸린 요청은 락 누수/교착 의심으로 보고한다.
+     */
+    @Builder.Default
+    private final Duration stallThreshold = Duration.ofSeconds(5);
+}